@@ -20,12 +20,17 @@ package com.rivescript;/*
  * SOFTWARE.
  */
 
+import com.rivescript.exception.DeadlineExceededException;
 import com.rivescript.exception.DeepRecursionException;
 import com.rivescript.exception.RepliesNotSortedException;
 import com.rivescript.exception.ReplyNotFoundException;
 import com.rivescript.exception.ReplyNotMatchedException;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.fail;
+
 /**
  * @author Noah Petherbridge
  * @author Marcel Overdijk
@@ -55,5 +60,11 @@ public class ExceptionsIT extends BaseIT {
 		assertReplyThrows("one", DeepRecursionException.class);
 		assertReplyThrows("test not matched", ReplyNotMatchedException.class);
 		assertReplyThrows("test not found", ReplyNotFoundException.class);
+		try {
+			rs.reply(username, "hello bot", 0, TimeUnit.MILLISECONDS);
+			fail("Expected a DeadlineExceededException");
+		} catch (DeadlineExceededException e) {
+			// Expected.
+		}
 	}
 }
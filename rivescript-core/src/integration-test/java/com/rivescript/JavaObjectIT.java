@@ -22,12 +22,19 @@
 
 package com.rivescript;
 
+import com.rivescript.macro.ContextualSubroutine;
 import com.rivescript.macro.Subroutine;
 import com.rivescript.util.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
+import static com.rivescript.RiveScript.DEFAULT_DEADLINE_EXCEEDED_MESSAGE;
 import static com.rivescript.RiveScript.DEFAULT_OBJECT_NOT_FOUND_MESSAGE;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 
 /**
  * Integration tests for Java {@link Subroutine}.
@@ -56,13 +63,45 @@ public class JavaObjectIT extends BaseIT {
 				return null;
 			}
 		});
+		rs.setSubroutine("whoami", new ContextualSubroutine() {
+
+			@Override
+			public String call(RiveScript rs, ReplyContext context, String[] args) {
+				return context.getUsername() + " " + context.getStars().get(0) + " " + rs.currentUser();
+			}
+
+			@Override
+			public String call(RiveScript rs, String[] args) {
+				throw new UnsupportedOperationException();
+			}
+		});
+		rs.setSubroutine("wait", new ContextualSubroutine() {
+
+			@Override
+			public String call(RiveScript rs, ReplyContext context, String[] args) {
+				long end = System.currentTimeMillis() + 5000;
+				while (!context.isExpired() && System.currentTimeMillis() < end) {
+					Thread.yield();
+				}
+				return "done";
+			}
+
+			@Override
+			public String call(RiveScript rs, String[] args) {
+				throw new UnsupportedOperationException();
+			}
+		});
 		setUp(new String[] {
 				"+ reverse *",
 				"- <call>reverse <star></call>",
 				"+ my name is *",
 				"- I will remember that.<call>setname \"<formal>\"</call>",
 				"+ what is my name",
-				"- You are <get name>."
+				"- You are <get name>.",
+				"+ who * i",
+				"- <call>whoami</call>",
+				"+ wait",
+				"- <call>wait</call>"
 		});
 	}
 
@@ -77,9 +116,21 @@ public class JavaObjectIT extends BaseIT {
 		assertReply("what is my name", "You are John Doe.");
 	}
 
+	@Test
+	public void testContextualSubroutine() {
+		assertReply("who am i", "local-user am null");
+	}
+
 	@Test
 	public void testRemoveSubroutine() {
 		rs.removeSubroutine("reverse");
 		assertReply("reverse hello world", DEFAULT_OBJECT_NOT_FOUND_MESSAGE);
 	}
+
+	@Test
+	public void testDeadline() {
+		assertThat(rs.reply(username, "reverse hello world", 10, TimeUnit.SECONDS), is(equalTo("dlrow olleh")));
+		assertThat(rs.reply(username, "wait", 50, TimeUnit.MILLISECONDS), is(equalTo(DEFAULT_DEADLINE_EXCEEDED_MESSAGE)));
+		assertThat(rs.getUservars(username).getHistory().getInput(0), is(equalTo("reverse hello world")));
+	}
 }
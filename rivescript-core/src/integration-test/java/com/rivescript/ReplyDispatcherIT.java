@@ -0,0 +1,192 @@
+package com.rivescript;/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class ReplyDispatcherIT extends BaseIT {
+
+	@Test
+	public void testRepliesOfSameUserAreOrdered() throws InterruptedException, ExecutionException {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ count",
+				"- <add counter=1><get counter>",
+		});
+		rs.setUservar("user1", "counter", "0");
+		rs.setUservar("user2", "counter", "0");
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		ReplyDispatcher dispatcher = new ReplyDispatcher(rs, executor, 2);
+		List<Future<String>> user1 = new ArrayList<>();
+		List<Future<String>> user2 = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			user1.add(dispatcher.submit("user1", "count"));
+			user2.add(dispatcher.submit("user2", "count"));
+		}
+		for (int i = 0; i < 100; i++) {
+			assertThat(user1.get(i).get(), is(equalTo(String.valueOf(i + 1))));
+			assertThat(user2.get(i).get(), is(equalTo(String.valueOf(i + 1))));
+		}
+		dispatcher.close();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testMailboxPerUser() throws Exception {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ hello bot",
+				"- Hello human.",
+		});
+
+		// "Aa" and "BB" have the same hash code, so they would always share a mailbox.
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		ReplyDispatcher dispatcher = new ReplyDispatcher(rs, executor, true) {
+		};
+		final CountDownLatch latch = new CountDownLatch(1);
+		Future<Boolean> blocked = dispatcher.submit("Aa", new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws InterruptedException {
+				return latch.await(10, TimeUnit.SECONDS);
+			}
+		});
+		assertThat(dispatcher.submit("BB", "Hello bot").get(5, TimeUnit.SECONDS), is(equalTo("Hello human.")));
+		latch.countDown();
+		assertThat(blocked.get(), is(equalTo(true)));
+
+		// Idle mailboxes are removed and created again on demand.
+		assertThat(dispatcher.submit("Aa", "Hello bot").get(), is(equalTo("Hello human.")));
+		dispatcher.close();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testCoalesceReplies() throws InterruptedException, ExecutionException {
+		rs = new RiveScript(Config.newBuilder().coalesceReplies(true).replyCacheSize(0).build());
+		setUp(new String[] {
+				"+ hello bot",
+				"- Hello human.",
+				"",
+				"+ what is my name",
+				"- Your name is <get name>.",
+		});
+		for (int i = 0; i < 50; i++) {
+			rs.setUservar("user" + i, "name", "User " + i);
+		}
+
+		// Concurrent requests share pure replies only.
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		ReplyDispatcher dispatcher = new ReplyDispatcher(rs, executor, 8);
+		List<Future<String>> hello = new ArrayList<>();
+		List<Future<String>> name = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			hello.add(dispatcher.submit("user" + i, "Hello bot"));
+			name.add(dispatcher.submit("user" + i, "What is my name?"));
+		}
+		for (int i = 0; i < 50; i++) {
+			assertThat(hello.get(i).get(), is(equalTo("Hello human.")));
+			assertThat(name.get(i).get(), is(equalTo("Your name is User " + i + ".")));
+		}
+		assertThat(rs.isCoalesceReplies(), is(equalTo(true)));
+		dispatcher.close();
+		executor.shutdown();
+	}
+
+	@Test
+	public void testOwnThreadPool() throws InterruptedException, ExecutionException {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ hello bot",
+				"- Hello human.",
+		});
+		ReplyDispatcher dispatcher = new ReplyDispatcher(rs);
+		assertThat(dispatcher.submit(username, "Hello bot").get(), is(equalTo("Hello human.")));
+		dispatcher.close();
+	}
+
+	@Test
+	public void testReplyAsync() throws InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		rs = new RiveScript(Config.Builder.basic().executor(executor).build());
+		setUp(new String[] {
+				"+ hello bot",
+				"- Hello human.",
+		});
+		final AtomicReference<String> callbackReply = new AtomicReference<>();
+		Future<String> reply = rs.replyAsync(username, "Hello bot", new ReplyCallback() {
+
+			@Override
+			public void onReply(String reply) {
+				callbackReply.set(reply);
+			}
+
+			@Override
+			public void onError(Exception e) {
+			}
+		});
+		assertThat(reply.get(), is(equalTo("Hello human.")));
+		assertThat(callbackReply.get(), is(equalTo("Hello human.")));
+		assertThat(rs.replyAsync(username, "Hello bot").get(), is(equalTo("Hello human.")));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testReplyBatch() {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ count",
+				"- <add counter=1><get counter>",
+				"+ hello bot",
+				"- Hello human.",
+		});
+		rs.setUservar("user1", "counter", "0");
+		rs.setUservar("user2", "counter", "0");
+		List<String> replies = rs.replyBatch(Arrays.asList(
+				new ReplyRequest("user1", "count"),
+				new ReplyRequest("user2", "count"),
+				new ReplyRequest("user1", "count"),
+				new ReplyRequest("user3", "Hello bot"),
+				new ReplyRequest("user1", "count")));
+		assertThat(replies, is(equalTo(Arrays.asList("1", "1", "2", "Hello human.", "3"))));
+	}
+}
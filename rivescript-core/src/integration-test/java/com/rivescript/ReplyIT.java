@@ -26,6 +26,9 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static com.rivescript.RiveScript.DEFAULT_DEEP_RECURSION_MESSAGE;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 
 /**
  * @author Noah Petherbridge
@@ -144,6 +147,64 @@ public class ReplyIT extends BaseIT {
 		assertReply("one", DEFAULT_DEEP_RECURSION_MESSAGE);
 	}
 
+	@Test
+	public void testStaticRedirects() {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ hello *",
+				"- Hello, <star>!",
+				"",
+				"+ greetings",
+				"@ hello bot",
+				"",
+				"// Redirect cycle between these three.",
+				"+ one",
+				"@ two",
+				"+ two",
+				"@ three",
+				"+ three",
+				"@ one",
+				"",
+				"// Redirects to the same trigger with changing variables are no cycle.",
+				"+ count",
+				"* <get counter> == 3 => Done counting.",
+				"- <add counter=1>{@ count}"
+		});
+		assertReply("greetings", "Hello, bot!");
+		assertReply("one", DEFAULT_DEEP_RECURSION_MESSAGE);
+		assertReply("three", DEFAULT_DEEP_RECURSION_MESSAGE);
+		setUservar("counter", "0");
+		assertReply("count", "Done counting.");
+	}
+
+	@Test
+	public void testStaticRedirectsMatchDynamicRedirects() {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ version 1.0",
+				"- Version one.",
+				"",
+				"+ hello *",
+				"- Hello, <star>!",
+				"",
+				"+ static version",
+				"@ version 100",
+				"+ dynamic version",
+				"@ <get target>",
+				"",
+				"+ static hello",
+				"@ hello bot",
+				"+ dynamic hello",
+				"@ <get target>"
+		});
+		setUservar("target", "version 100");
+		assertReply("static version", "Version one.");
+		assertReply("dynamic version", "Version one.");
+		setUservar("target", "hello bot");
+		assertReply("static hello", "Hello, bot!");
+		assertReply("dynamic hello", "Hello, bot!");
+	}
+
 	@Test
 	public void testConditionals() {
 		rs = new RiveScript();
@@ -234,4 +295,103 @@ public class ReplyIT extends BaseIT {
 		});
 		assertReply("google golang", "<a href=\"https://www.google.com/search?q=golang\">Results are here</a>");
 	}
+
+	@Test
+	public void testReplyCache() {
+		rs = new RiveScript(Config.newBuilder().replyCacheSize(100).build());
+		setUp(new String[] {
+				"+ hello bot",
+				"- Hello human.",
+				"",
+				"+ what is my name",
+				"- Your name is <get name>.",
+				"",
+				"+ sleep",
+				"- Good night.{topic=sleeping}",
+				"",
+				"> topic sleeping",
+				"  + hello bot",
+				"  - Zzz.",
+				"< topic"
+		});
+
+		// Pure replies are remembered per topic and message.
+		assertReply("Hello bot", "Hello human.");
+		assertThat(rs.getReplyCacheHitCount(), is(equalTo(0L)));
+		assertReply("Hello bot!", "Hello human.");
+		assertThat(rs.getReplyCacheHitCount(), is(equalTo(1L)));
+		assertThat(rs.lastMatch(username), is(equalTo("hello bot")));
+
+		// Replies with tags are not.
+		setUservar("name", "Aiden");
+		assertReply("What is my name?", "Your name is Aiden.");
+		setUservar("name", "Bob");
+		assertReply("What is my name?", "Your name is Bob.");
+		assertThat(rs.getReplyCacheHitCount(), is(equalTo(1L)));
+
+		// Sorting the replies again forgets them.
+		rs.sortReplies();
+		assertReply("Hello bot", "Hello human.");
+		assertThat(rs.getReplyCacheHitCount(), is(equalTo(1L)));
+
+		assertReply("Sleep", "Good night.");
+		assertReply("Hello bot", "Zzz.");
+		assertThat(rs.getReplyCacheHitCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void testReplyCacheDisabledByDefault() {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ hello bot",
+				"- Hello human."
+		});
+		assertReply("Hello bot", "Hello human.");
+		assertReply("Hello bot", "Hello human.");
+		assertThat(rs.getReplyCacheSize(), is(equalTo(0)));
+		assertThat(rs.getReplyCacheHitCount(), is(equalTo(0L)));
+	}
+
+	@Test
+	public void testMatchCache() {
+		rs = new RiveScript(Config.newBuilder().matchCacheSize(100).build());
+		setUp(new String[] {
+				"+ hello *",
+				"- Hi, <star>!",
+				"",
+				"> topic names",
+				"  + i am <get name>",
+				"  - I know, <get name>.",
+				"",
+				"  + i am *",
+				"  - Nice to meet you, <star>.",
+				"< topic"
+		});
+
+		// Matches are remembered with their stars, the reply is still processed.
+		assertReply("Hello Bob", "Hi, bob!");
+		assertReply("Hello Bob", "Hi, bob!");
+		assertReply("Hello Alice", "Hi, alice!");
+		assertThat(rs.getMatchCacheHitCount(), is(equalTo(1L)));
+
+		// Matches after triggers depending on the user are not.
+		setUservar("topic", "names");
+		assertReply("I am Bob", "Nice to meet you, bob.");
+		setUservar("name", "bob");
+		assertReply("I am Bob", "I know, bob.");
+		assertThat(rs.getMatchCacheHitCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void testMatchCacheDisabledByDefault() {
+		rs = new RiveScript();
+		setUp(new String[] {
+				"+ hello *",
+				"- Hi, <star>!"
+		});
+		assertReply("Hello Bob", "Hi, bob!");
+		assertReply("Hello Bob", "Hi, bob!");
+		assertThat(rs.getMatchCacheSize(), is(equalTo(0)));
+		assertThat(rs.getMatchCacheHitCount(), is(equalTo(0L)));
+	}
 }
@@ -23,6 +23,9 @@ package com.rivescript;/*
 import org.junit.Test;
 
 import static com.rivescript.RiveScript.DEFAULT_REPLY_NOT_MATCHED_MESSAGE;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
 
 /**
  * @author Noah Petherbridge
@@ -151,6 +154,38 @@ public class TriggerIT extends BaseIT {
 		assertReply("I have a cyan car.", DEFAULT_REPLY_NOT_MATCHED_MESSAGE);
 	}
 
+	@Test
+	public void testLargeTriggerArrays() {
+		StringBuilder shades = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			shades.append(i > 0 ? "|" : "").append("shade").append(i);
+		}
+		rs = new RiveScript();
+		setUp(new String[] {
+				"! array colors = red blue green yellow white",
+				"^ dark blue|light blue",
+				"^ " + shades,
+				"",
+				"+ what color is my (@colors) *",
+				"- Your <star2> is <star1>.",
+				"",
+				"+ what color was * (@colors) *",
+				"- It was <star2>.",
+				"",
+				"+ i have a [@colors] car",
+				"- Tell me more about your car."
+		});
+		assertReply("What color is my red shirt?", "Your shirt is red.");
+		assertReply("What color is my shade42 car?", "Your car is shade42.");
+		assertReply("What color is my pink house?", DEFAULT_REPLY_NOT_MATCHED_MESSAGE);
+		assertReply("What color is my dark blue jacket?", "Your jacket is dark blue.");
+		assertReply("What color was Napoleoan's white horse?", "It was white.");
+		assertReply("What color was my red shirt?", "It was red.");
+		assertReply("I have a blue car.", "Tell me more about your car.");
+		assertReply("I have a car.", "Tell me more about your car.");
+		assertReply("I have a cyan car.", DEFAULT_REPLY_NOT_MATCHED_MESSAGE);
+	}
+
 	@Test
 	public void testWeightedTriggers() {
 		rs = new RiveScript();
@@ -169,4 +204,27 @@ public class TriggerIT extends BaseIT {
 		assertReply("Can you run a Google search for Node", "Sure!");
 		assertReply("Can you run a Google search for Node or something", "Or something. Sure!");
 	}
+
+	@Test
+	public void testRegexBudget() {
+		rs = new RiveScript(Config.newBuilder().regexBudget(100000).build());
+		setUp(new String[] {
+				"+ * * * * * * * * zebra",
+				"- Found a zebra.",
+				"",
+				"+ *",
+				"- Fallback."
+		});
+		assertReply("one two three four five six seven eight zebra", "Found a zebra.");
+		assertThat(rs.getRegexBudgetExceededCount(), is(equalTo(0L)));
+
+		// Backtracks catastrophically over all ways to split the words between the wildcards.
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < 60; i++) {
+			message.append("word ");
+		}
+		message.append("zebra crossing");
+		assertReply(message.toString(), "Fallback.");
+		assertThat(rs.getRegexBudgetExceededCount(), is(equalTo(1L)));
+	}
 }
@@ -0,0 +1,538 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission controller shedding load in front of {@link RiveScript#reply(String, String)}, so the latency of admitted replies stays
+ * bounded under traffic spikes.
+ * <p>
+ * Replies are admitted up to an adaptive concurrency limit. The limit is adjusted with AIMD (additive increase, multiplicative
+ * decrease): it grows by one for each reply completing within the latency threshold while the limit is in use, and is multiplied by
+ * the backoff ratio when a reply exceeds it. The limit backs off at most once per window: only replies admitted after the previous
+ * backoff can trigger the next one, so a burst of slow replies admitted together lowers the limit by a single step. Replies over the
+ * limit wait in a bounded queue for at most the maximum queue wait, and are rejected when the queue is full or the wait times out.
+ * Optionally each user is rate limited with a token bucket.
+ * <p>
+ * Rejected replies are answered with the {@link RiveScript#OVERLOADED_KEY} or {@link RiveScript#RATE_LIMITED_KEY} error message.
+ * <p>
+ * Usage:
+ * <p>
+ * <pre>
+ * <code>
+ * AdmissionController admissionController = AdmissionController.newBuilder()
+ *         .maxLimit(200)
+ *         .latencyThreshold(250, TimeUnit.MILLISECONDS)
+ *         .userRate(5, 10)
+ *         .build();
+ * RiveScript rs = new RiveScript(Config.newBuilder()
+ *         .admissionController(admissionController)
+ *         .build());
+ * </code>
+ * </pre>
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class AdmissionController {
+
+	/**
+	 * The default initial concurrency limit.
+	 */
+	public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+	/**
+	 * The default minimum concurrency limit.
+	 */
+	public static final int DEFAULT_MIN_LIMIT = 1;
+
+	/**
+	 * The default maximum concurrency limit.
+	 */
+	public static final int DEFAULT_MAX_LIMIT = 1000;
+
+	/**
+	 * The default ratio the concurrency limit is multiplied by when a reply exceeds the latency threshold.
+	 */
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+	/**
+	 * The default latency threshold in milliseconds.
+	 */
+	public static final long DEFAULT_LATENCY_THRESHOLD = 500;
+
+	/**
+	 * The default maximum number of replies waiting for admission.
+	 */
+	public static final int DEFAULT_MAX_QUEUE_SIZE = 100;
+
+	/**
+	 * The default maximum time in milliseconds a reply waits for admission.
+	 */
+	public static final long DEFAULT_MAX_QUEUE_WAIT = 100;
+
+	private static final int MAX_IDLE_BUCKETS = 10000;
+
+	private static final Permit OVERLOADED = new Permit(null, 0, 0, false);
+	private static final Permit RATE_LIMITED = new Permit(null, 0, 0, true);
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final double backoffRatio;
+	private final long latencyThresholdNanos;
+	private final int maxQueueSize;
+	private final long maxQueueWaitNanos;
+	private final double userRate;
+	private final double userBurst;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private double limit;
+	private int inFlight;
+	private int queued;
+	private long admitted;        // sequence number of the last admitted reply
+	private long backoffAdmitted; // sequence number of the last admitted reply when the limit last backed off
+
+	private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+	private final AtomicLong overloaded = new AtomicLong();
+	private final AtomicLong rateLimited = new AtomicLong();
+
+	private AdmissionController(Builder builder) {
+		this.limit = builder.initialLimit;
+		this.minLimit = builder.minLimit;
+		this.maxLimit = builder.maxLimit;
+		this.backoffRatio = builder.backoffRatio;
+		this.latencyThresholdNanos = builder.latencyThresholdNanos;
+		this.maxQueueSize = builder.maxQueueSize;
+		this.maxQueueWaitNanos = builder.maxQueueWaitNanos;
+		this.userRate = builder.userRate;
+		this.userBurst = builder.userBurst;
+	}
+
+	/**
+	 * Tries to admit a reply for the given user, waiting in the queue if the concurrency limit is reached.
+	 * <p>
+	 * An admitted {@link Permit} must be released when the reply is complete.
+	 *
+	 * @param username the username
+	 * @return the permit, see {@link Permit#isAdmitted()}
+	 */
+	public Permit admit(String username) {
+		TokenBucket bucket = null;
+		if (userRate > 0) {
+			bucket = bucket(username);
+			if (!bucket.tryTake(userRate, userBurst)) {
+				rateLimited.incrementAndGet();
+				return RATE_LIMITED;
+			}
+		}
+		long sequence;
+		lock.lock();
+		try {
+			if (inFlight >= (int) limit) {
+				if (queued >= maxQueueSize) {
+					return overloaded(bucket);
+				}
+				queued++;
+				try {
+					long remaining = maxQueueWaitNanos;
+					while (inFlight >= (int) limit) {
+						if (remaining <= 0) {
+							return overloaded(bucket);
+						}
+						remaining = available.awaitNanos(remaining);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return overloaded(bucket);
+				} finally {
+					queued--;
+				}
+			}
+			inFlight++;
+			sequence = ++admitted;
+		} finally {
+			lock.unlock();
+		}
+		return new Permit(this, sequence, System.nanoTime(), false);
+	}
+
+	/**
+	 * Rejects a reply because of overload, giving the user's token back.
+	 */
+	private Permit overloaded(TokenBucket bucket) {
+		if (bucket != null) {
+			bucket.refund(userBurst);
+		}
+		overloaded.incrementAndGet();
+		return OVERLOADED;
+	}
+
+	/**
+	 * Returns the current concurrency limit.
+	 *
+	 * @return the concurrency limit
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of admitted replies in flight.
+	 *
+	 * @return the number of replies in flight
+	 */
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of replies waiting for admission.
+	 *
+	 * @return the number of waiting replies
+	 */
+	public int getQueued() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the total number of replies rejected because of overload.
+	 *
+	 * @return the number of rejected replies
+	 */
+	public long getOverloadedCount() {
+		return overloaded.get();
+	}
+
+	/**
+	 * Returns the total number of replies rejected because of per-user rate limiting.
+	 *
+	 * @return the number of rejected replies
+	 */
+	public long getRateLimitedCount() {
+		return rateLimited.get();
+	}
+
+	/**
+	 * Records a completed reply, adjusts the concurrency limit and hands the slot to a waiting reply.
+	 *
+	 * @param sequence     the sequence number the reply was admitted with
+	 * @param latencyNanos the latency of the reply
+	 */
+	private void release(long sequence, long latencyNanos) {
+		lock.lock();
+		try {
+			int previous = (int) limit;
+			if (latencyNanos > latencyThresholdNanos) {
+				// Replies admitted before the previous backoff were slowed down by the load that caused it.
+				if (sequence > backoffAdmitted) {
+					limit = Math.max(minLimit, limit * backoffRatio);
+					backoffAdmitted = admitted;
+				}
+			} else if (inFlight * 2 >= limit) {
+				limit = Math.min(maxLimit, limit + 1);
+			}
+			inFlight--;
+			available.signal();
+			if ((int) limit > previous) {
+				available.signal();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private TokenBucket bucket(String username) {
+		TokenBucket bucket = buckets.get(username);
+		if (bucket == null) {
+			if (buckets.size() >= MAX_IDLE_BUCKETS) {
+				evictIdleBuckets();
+			}
+			bucket = new TokenBucket(userBurst);
+			TokenBucket existing = buckets.putIfAbsent(username, bucket);
+			if (existing != null) {
+				bucket = existing;
+			}
+		}
+		return bucket;
+	}
+
+	/**
+	 * Removes the buckets which refilled completely; they are recreated full on the next request of their user.
+	 */
+	private void evictIdleBuckets() {
+		Iterator<TokenBucket> it = buckets.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isFull(userRate, userBurst)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new {@link Builder}.
+	 *
+	 * @return the builder
+	 */
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * The outcome of an admission attempt. An admitted permit must be released when the reply is complete.
+	 */
+	public static final class Permit {
+
+		private final AdmissionController controller;
+		private final long sequence;
+		private final long startNanos;
+		private final boolean rateLimited;
+		private boolean released;
+
+		private Permit(AdmissionController controller, long sequence, long startNanos, boolean rateLimited) {
+			this.controller = controller;
+			this.sequence = sequence;
+			this.startNanos = startNanos;
+			this.rateLimited = rateLimited;
+		}
+
+		/**
+		 * Returns whether the reply was admitted.
+		 *
+		 * @return whether the reply was admitted
+		 */
+		public boolean isAdmitted() {
+			return controller != null;
+		}
+
+		/**
+		 * Returns whether the reply was rejected because of per-user rate limiting (as opposed to overload).
+		 *
+		 * @return whether the reply was rate limited
+		 */
+		public boolean isRateLimited() {
+			return rateLimited;
+		}
+
+		/**
+		 * Releases the permit, recording the reply's latency. Does nothing for rejected or already released permits.
+		 */
+		public void release() {
+			if (controller != null && !released) {
+				released = true;
+				controller.release(sequence, System.nanoTime() - startNanos);
+			}
+		}
+	}
+
+	/**
+	 * Per-user token bucket.
+	 */
+	private static class TokenBucket {
+
+		private double tokens;
+		private long refilledAt;
+
+		TokenBucket(double burst) {
+			this.tokens = burst;
+			this.refilledAt = System.nanoTime();
+		}
+
+		synchronized boolean tryTake(double rate, double burst) {
+			refill(rate, burst);
+			if (tokens >= 1) {
+				tokens--;
+				return true;
+			}
+			return false;
+		}
+
+		synchronized void refund(double burst) {
+			tokens = Math.min(burst, tokens + 1);
+		}
+
+		synchronized boolean isFull(double rate, double burst) {
+			refill(rate, burst);
+			return tokens >= burst;
+		}
+
+		private void refill(double rate, double burst) {
+			long now = System.nanoTime();
+			tokens = Math.min(burst, tokens + (now - refilledAt) * rate / TimeUnit.SECONDS.toNanos(1));
+			refilledAt = now;
+		}
+	}
+
+	/**
+	 * Builder for {@link AdmissionController}.
+	 */
+	public static final class Builder {
+
+		private int initialLimit = DEFAULT_INITIAL_LIMIT;
+		private int minLimit = DEFAULT_MIN_LIMIT;
+		private int maxLimit = DEFAULT_MAX_LIMIT;
+		private double backoffRatio = DEFAULT_BACKOFF_RATIO;
+		private long latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LATENCY_THRESHOLD);
+		private int maxQueueSize = DEFAULT_MAX_QUEUE_SIZE;
+		private long maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_QUEUE_WAIT);
+		private double userRate;
+		private double userBurst;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets the initial concurrency limit.
+		 *
+		 * @param initialLimit the initial concurrency limit
+		 * @return this builder
+		 */
+		public Builder initialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the minimum concurrency limit.
+		 *
+		 * @param minLimit the minimum concurrency limit
+		 * @return this builder
+		 */
+		public Builder minLimit(int minLimit) {
+			this.minLimit = minLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum concurrency limit.
+		 *
+		 * @param maxLimit the maximum concurrency limit
+		 * @return this builder
+		 */
+		public Builder maxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+			return this;
+		}
+
+		/**
+		 * Sets the ratio the concurrency limit is multiplied by when a reply exceeds the latency threshold.
+		 *
+		 * @param backoffRatio the backoff ratio, between {@code 0} and {@code 1}
+		 * @return this builder
+		 */
+		public Builder backoffRatio(double backoffRatio) {
+			this.backoffRatio = backoffRatio;
+			return this;
+		}
+
+		/**
+		 * Sets the latency threshold above which the concurrency limit is decreased.
+		 *
+		 * @param latencyThreshold the latency threshold
+		 * @param unit             the time unit
+		 * @return this builder
+		 */
+		public Builder latencyThreshold(long latencyThreshold, TimeUnit unit) {
+			this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of replies waiting for admission, or {@code 0} to reject immediately when the limit is reached.
+		 *
+		 * @param maxQueueSize the maximum queue size
+		 * @return this builder
+		 */
+		public Builder maxQueueSize(int maxQueueSize) {
+			this.maxQueueSize = maxQueueSize;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum time a reply waits for admission.
+		 *
+		 * @param maxQueueWait the maximum queue wait
+		 * @param unit         the time unit
+		 * @return this builder
+		 */
+		public Builder maxQueueWait(long maxQueueWait, TimeUnit unit) {
+			this.maxQueueWaitNanos = unit.toNanos(maxQueueWait);
+			return this;
+		}
+
+		/**
+		 * Enables per-user rate limiting.
+		 *
+		 * @param rate  the sustained number of replies per second per user
+		 * @param burst the maximum number of replies per user in a burst
+		 * @return this builder
+		 */
+		public Builder userRate(double rate, int burst) {
+			this.userRate = rate;
+			this.userBurst = burst;
+			return this;
+		}
+
+		/**
+		 * Builds the {@link AdmissionController}.
+		 *
+		 * @return the admission controller
+		 */
+		public AdmissionController build() {
+			if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+				throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+			}
+			if (backoffRatio <= 0 || backoffRatio >= 1) {
+				throw new IllegalArgumentException("'backoffRatio' must be between 0 and 1");
+			}
+			if (maxQueueSize < 0) {
+				throw new IllegalArgumentException("'maxQueueSize' must not be negative");
+			}
+			if (userRate < 0 || (userRate > 0 && userBurst < 1)) {
+				throw new IllegalArgumentException("'rate' must not be negative and 'burst' must be at least 1");
+			}
+			return new AdmissionController(this);
+		}
+	}
+}
@@ -26,6 +26,7 @@ import com.rivescript.session.SessionManager;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static com.rivescript.ConcatMode.NONE;
 
@@ -47,6 +48,22 @@ public class Config {
 	 */
 	public static final int DEFAULT_DEPTH = 50;
 
+	/**
+	 * The default maximum number of input characters a trigger's regexp may examine while matching a single message: {@code 0},
+	 * no limit, the budget is opt-in.
+	 */
+	public static final int DEFAULT_REGEX_BUDGET = 0;
+
+	/**
+	 * The default maximum number of pure replies remembered by the reply cache: {@code 0}, the cache is opt-in.
+	 */
+	public static final int DEFAULT_REPLY_CACHE_SIZE = 0;
+
+	/**
+	 * The default maximum number of trigger matches remembered by the match cache: {@code 0}, the cache is opt-in.
+	 */
+	public static final int DEFAULT_MATCH_CACHE_SIZE = 0;
+
 	/**
 	 * The default unicode punctuation pattern.
 	 */
@@ -60,6 +77,12 @@ public class Config {
 	private ConcatMode concat = DEFAULT_CONCAT;
 	private int depth = DEFAULT_DEPTH;
 	private SessionManager sessionManager;
+	private Executor executor;
+	private AdmissionController admissionController;
+	private int regexBudget = DEFAULT_REGEX_BUDGET;
+	private int replyCacheSize = DEFAULT_REPLY_CACHE_SIZE;
+	private int matchCacheSize = DEFAULT_MATCH_CACHE_SIZE;
+	private boolean coalesceReplies;
 	private Map<String, String> errorMessages;
 
 	protected Config() {
@@ -137,6 +160,60 @@ public class Config {
 		return sessionManager;
 	}
 
+	/**
+	 * Returns the {@link Executor} for asynchronous replies.
+	 *
+	 * @return the executor for asynchronous replies
+	 */
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Returns the {@link AdmissionController} shedding load in front of replies, or {@code null} if all replies are admitted.
+	 *
+	 * @return the admission controller shedding load in front of replies, or {@code null} if all replies are admitted
+	 */
+	public AdmissionController getAdmissionController() {
+		return admissionController;
+	}
+
+	/**
+	 * Returns the regexp budget: the number of input characters a trigger's regexp may examine per match, or {@code 0} for no limit.
+	 *
+	 * @return the regexp budget
+	 */
+	public int getRegexBudget() {
+		return regexBudget;
+	}
+
+	/**
+	 * Returns the reply cache size: the maximum number of pure replies remembered, or {@code 0} to disable the cache.
+	 *
+	 * @return the reply cache size
+	 */
+	public int getReplyCacheSize() {
+		return replyCacheSize;
+	}
+
+	/**
+	 * Returns the match cache size: the maximum number of trigger matches remembered, or {@code 0} to disable the cache.
+	 *
+	 * @return the match cache size
+	 */
+	public int getMatchCacheSize() {
+		return matchCacheSize;
+	}
+
+	/**
+	 * Returns whether concurrent requests for the same pure reply are coalesced.
+	 *
+	 * @return whether concurrent requests for the same pure reply are coalesced
+	 */
+	public boolean isCoalesceReplies() {
+		return coalesceReplies;
+	}
+
 	/**
 	 * Returns the custom error message overrides.
 	 *
@@ -173,12 +250,30 @@ public class Config {
 		if (depth != that.depth) {
 			return false;
 		}
+		if (coalesceReplies != that.coalesceReplies) {
+			return false;
+		}
+		if (matchCacheSize != that.matchCacheSize) {
+			return false;
+		}
+		if (replyCacheSize != that.replyCacheSize) {
+			return false;
+		}
+		if (regexBudget != that.regexBudget) {
+			return false;
+		}
 		if (unicodePunctuation != null ? !unicodePunctuation.equals(that.unicodePunctuation) : that.unicodePunctuation != null) {
 			return false;
 		}
 		if (sessionManager != null ? !sessionManager.equals(that.sessionManager) : that.sessionManager != null) {
 			return false;
 		}
+		if (executor != null ? !executor.equals(that.executor) : that.executor != null) {
+			return false;
+		}
+		if (admissionController != null ? !admissionController.equals(that.admissionController) : that.admissionController != null) {
+			return false;
+		}
 		return errorMessages != null ? errorMessages.equals(that.errorMessages) : that.errorMessages == null;
 	}
 
@@ -192,6 +287,12 @@ public class Config {
 		result = 31 * result + (concat != null ? concat.hashCode() : 0);
 		result = 31 * result + depth;
 		result = 31 * result + (sessionManager != null ? sessionManager.hashCode() : 0);
+		result = 31 * result + (executor != null ? executor.hashCode() : 0);
+		result = 31 * result + (admissionController != null ? admissionController.hashCode() : 0);
+		result = 31 * result + regexBudget;
+		result = 31 * result + replyCacheSize;
+		result = 31 * result + matchCacheSize;
+		result = 31 * result + (coalesceReplies ? 1 : 0);
 		result = 31 * result + (errorMessages != null ? errorMessages.hashCode() : 0);
 		return result;
 	}
@@ -207,6 +308,12 @@ public class Config {
 				", concat=" + concat +
 				", depth=" + depth +
 				", sessionManager=" + sessionManager +
+				", executor=" + executor +
+				", admissionController=" + admissionController +
+				", regexBudget=" + regexBudget +
+				", replyCacheSize=" + replyCacheSize +
+				", matchCacheSize=" + matchCacheSize +
+				", coalesceReplies=" + coalesceReplies +
 				", errorMessages=" + errorMessages +
 				'}';
 	}
@@ -226,6 +333,12 @@ public class Config {
 				.concat(this.concat)
 				.depth(this.depth)
 				.sessionManager(this.sessionManager)
+				.executor(this.executor)
+				.admissionController(this.admissionController)
+				.regexBudget(this.regexBudget)
+				.replyCacheSize(this.replyCacheSize)
+				.matchCacheSize(this.matchCacheSize)
+				.coalesceReplies(this.coalesceReplies)
 				.errorMessages(this.errorMessages);
 	}
 
@@ -269,6 +382,12 @@ public class Config {
 		private ConcatMode concat = DEFAULT_CONCAT;
 		private int depth = DEFAULT_DEPTH;
 		private SessionManager sessionManager;
+		private Executor executor;
+		private AdmissionController admissionController;
+		private int regexBudget = DEFAULT_REGEX_BUDGET;
+		private int replyCacheSize = DEFAULT_REPLY_CACHE_SIZE;
+		private int matchCacheSize = DEFAULT_MATCH_CACHE_SIZE;
+		private boolean coalesceReplies;
 		private Map<String, String> errorMessages;
 
 		private Builder() {
@@ -362,6 +481,72 @@ public class Config {
 			return this;
 		}
 
+		/**
+		 * Sets the {@link Executor} for asynchronous replies.
+		 *
+		 * @param executor the executor for asynchronous replies
+		 * @return this builder
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		/**
+		 * Sets the {@link AdmissionController} shedding load in front of replies, or {@code null} if all replies are admitted.
+		 *
+		 * @param admissionController the admission controller shedding load in front of replies, or {@code null} if all replies are admitted
+		 * @return this builder
+		 */
+		public Builder admissionController(AdmissionController admissionController) {
+			this.admissionController = admissionController;
+			return this;
+		}
+
+		/**
+		 * Sets the regexp budget: the number of input characters a trigger's regexp may examine per match, or {@code 0} for no limit.
+		 *
+		 * @param regexBudget the regexp budget
+		 * @return this builder
+		 */
+		public Builder regexBudget(int regexBudget) {
+			this.regexBudget = regexBudget;
+			return this;
+		}
+
+		/**
+		 * Sets the reply cache size: the maximum number of pure replies remembered, or {@code 0} to disable the cache.
+		 *
+		 * @param replyCacheSize the reply cache size
+		 * @return this builder
+		 */
+		public Builder replyCacheSize(int replyCacheSize) {
+			this.replyCacheSize = replyCacheSize;
+			return this;
+		}
+
+		/**
+		 * Sets the match cache size: the maximum number of trigger matches remembered, or {@code 0} to disable the cache.
+		 *
+		 * @param matchCacheSize the match cache size
+		 * @return this builder
+		 */
+		public Builder matchCacheSize(int matchCacheSize) {
+			this.matchCacheSize = matchCacheSize;
+			return this;
+		}
+
+		/**
+		 * Sets whether concurrent requests for the same pure reply are coalesced.
+		 *
+		 * @param coalesceReplies whether concurrent requests for the same pure reply are coalesced
+		 * @return this builder
+		 */
+		public Builder coalesceReplies(boolean coalesceReplies) {
+			this.coalesceReplies = coalesceReplies;
+			return this;
+		}
+
 		/**
 		 * Sets the custom error message overrides.
 		 *
@@ -403,6 +588,12 @@ public class Config {
 			config.concat = this.concat;
 			config.depth = this.depth;
 			config.sessionManager = this.sessionManager;
+			config.executor = this.executor;
+			config.admissionController = this.admissionController;
+			config.regexBudget = this.regexBudget;
+			config.replyCacheSize = this.replyCacheSize;
+			config.matchCacheSize = this.matchCacheSize;
+			config.coalesceReplies = this.coalesceReplies;
 			config.errorMessages = this.errorMessages;
 			return config;
 		}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript;
+
+import com.rivescript.macro.ContextualObjectHandler;
+import com.rivescript.macro.ContextualSubroutine;
+import com.rivescript.session.SessionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The state of a single {@link RiveScript#reply(String, String)} call.
+ * <p>
+ * A reply context is created per reply and passed explicitly through the reply processing and into
+ * {@link ContextualSubroutine}s and {@link ContextualObjectHandler}s, so a reply does not depend on the thread running it.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class ReplyContext {
+
+	private final String username;
+	private final SessionManager sessions;
+	private final long startTime;
+	private long deadline;
+	private boolean hasDeadline;
+	private List<String> stars;
+	private List<String> botstars;
+	private int depth;
+	private Set<String> redirects;
+
+	ReplyContext(String username, SessionManager sessions) {
+		this.username = username;
+		this.sessions = sessions;
+		this.startTime = System.currentTimeMillis();
+		this.stars = Collections.emptyList();
+		this.botstars = Collections.emptyList();
+	}
+
+	/**
+	 * Returns the ID of the user who is being replied to.
+	 *
+	 * @return the username
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns the session manager holding the user's variables.
+	 *
+	 * @return the session manager
+	 */
+	public SessionManager getSessionManager() {
+		return sessions;
+	}
+
+	/**
+	 * Returns the wildcard matches of the trigger currently being processed (unmodifiable).
+	 *
+	 * @return the stars
+	 */
+	public List<String> getStars() {
+		return stars;
+	}
+
+	/**
+	 * Returns the wildcard matches of the {@code %Previous} of the trigger currently being processed (unmodifiable).
+	 *
+	 * @return the bot stars
+	 */
+	public List<String> getBotstars() {
+		return botstars;
+	}
+
+	/**
+	 * Returns the current recursion depth, which is increased on every redirect.
+	 *
+	 * @return the recursion depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns the time the reply was started, in milliseconds since the epoch.
+	 *
+	 * @return the start time
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * Returns the time elapsed since the reply was started, in milliseconds.
+	 *
+	 * @return the elapsed time
+	 */
+	public long getElapsedTime() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	/**
+	 * Returns whether the reply has a deadline.
+	 *
+	 * @return whether the reply has a deadline
+	 * @see RiveScript#reply(String, String, long, TimeUnit)
+	 */
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+
+	/**
+	 * Returns whether the deadline of the reply has passed. Long running macros should check this and give up early.
+	 *
+	 * @return whether the deadline has passed, always {@code false} if the reply has no deadline
+	 */
+	public boolean isExpired() {
+		return hasDeadline && System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * Returns the time remaining until the deadline of the reply, e.g. to use as a timeout for I/O in macros.
+	 *
+	 * @param unit the time unit
+	 * @return the remaining time (negative if the deadline has passed), or {@link Long#MAX_VALUE} if the reply has no deadline
+	 */
+	public long getRemainingTime(TimeUnit unit) {
+		if (!hasDeadline) {
+			return Long.MAX_VALUE;
+		}
+		return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	void setDeadline(long timeout, TimeUnit unit) {
+		this.deadline = System.nanoTime() + unit.toNanos(timeout);
+		this.hasDeadline = true;
+	}
+
+	void setStars(List<String> stars, List<String> botstars) {
+		this.stars = Collections.unmodifiableList(new ArrayList<>(stars));
+		this.botstars = Collections.unmodifiableList(new ArrayList<>(botstars));
+	}
+
+	void setDepth(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Records following a static redirect, returns {@code false} if it was already followed since the redirects were cleared.
+	 */
+	boolean visitRedirect(String redirect) {
+		if (redirects == null) {
+			redirects = new HashSet<>();
+		}
+		return redirects.add(redirect);
+	}
+
+	/**
+	 * Forgets the followed redirects, e.g. when tags are processed which may change where the redirects lead to.
+	 */
+	void clearRedirects() {
+		if (redirects != null) {
+			redirects.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ReplyContext{" +
+				"username='" + username + '\'' +
+				", stars=" + stars +
+				", botstars=" + botstars +
+				", depth=" + depth +
+				", startTime=" + startTime +
+				'}';
+	}
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches replies to per-user mailboxes, so requests of the same user are processed strictly in order while requests of different
+ * users are processed in parallel.
+ * <p>
+ * Users are assigned to a fixed number of mailboxes by the hash of their username, so users sharing a mailbox also wait for each other.
+ * Subclasses running on an executor with cheap threads can instead give every user a mailbox of its own, created on demand and removed
+ * when idle. Each mailbox runs at most one task at a time on the underlying {@link Executor}, and hands the thread back after a small
+ * batch of tasks so busy users cannot starve others.
+ * <p>
+ * Usage:
+ * <p>
+ * <pre>
+ * <code>
+ * ReplyDispatcher dispatcher = new ReplyDispatcher(rs);
+ * Future&lt;String&gt; reply = dispatcher.submit("user", "hello bot");
+ * </code>
+ * </pre>
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class ReplyDispatcher implements Closeable {
+
+	/**
+	 * The default number of mailboxes per available processor.
+	 */
+	public static final int DEFAULT_MAILBOXES_PER_PROCESSOR = 16;
+
+	private static final int MAX_TASKS_PER_RUN = 16;
+
+	private static Logger logger = LoggerFactory.getLogger(ReplyDispatcher.class);
+
+	private final RiveScript rs;
+	private final Executor executor;
+	private final ExecutorService ownedExecutor;
+	private final Mailbox[] mailboxes;
+	private final ConcurrentMap<String, Mailbox> userMailboxes;
+
+	/**
+	 * Creates a new {@link ReplyDispatcher} running on its own thread pool with one thread per available processor.
+	 * The thread pool is shut down on {@link #close()}.
+	 *
+	 * @param rs the RiveScript instance
+	 */
+	public ReplyDispatcher(RiveScript rs) {
+		this(rs, null, Runtime.getRuntime().availableProcessors() * DEFAULT_MAILBOXES_PER_PROCESSOR);
+	}
+
+	/**
+	 * Creates a new {@link ReplyDispatcher} running on the given executor, using the default number of mailboxes.
+	 *
+	 * @param rs       the RiveScript instance
+	 * @param executor the executor
+	 */
+	public ReplyDispatcher(RiveScript rs, Executor executor) {
+		this(rs, executor, Runtime.getRuntime().availableProcessors() * DEFAULT_MAILBOXES_PER_PROCESSOR);
+	}
+
+	/**
+	 * Creates a new {@link ReplyDispatcher} running on the given executor.
+	 *
+	 * @param rs        the RiveScript instance
+	 * @param executor  the executor, or {@code null} to use an own thread pool with one thread per available processor
+	 * @param mailboxes the number of mailboxes
+	 */
+	public ReplyDispatcher(RiveScript rs, Executor executor, int mailboxes) {
+		this(rs, executor, mailboxes, false);
+	}
+
+	/**
+	 * Creates a new {@link ReplyDispatcher} running on the given executor, optionally with a mailbox per user. A user's own mailbox is
+	 * created when a task is submitted and removed once it ran all tasks, so a user never waits for another user's tasks.
+	 *
+	 * @param rs             the RiveScript instance
+	 * @param executor       the executor, or {@code null} to use an own thread pool with one thread per available processor
+	 * @param mailboxPerUser whether to give every user a mailbox of its own instead of using the default number of shared mailboxes
+	 */
+	protected ReplyDispatcher(RiveScript rs, Executor executor, boolean mailboxPerUser) {
+		this(rs, executor, Runtime.getRuntime().availableProcessors() * DEFAULT_MAILBOXES_PER_PROCESSOR, mailboxPerUser);
+	}
+
+	private ReplyDispatcher(RiveScript rs, Executor executor, int mailboxes, boolean mailboxPerUser) {
+		if (mailboxes <= 0) {
+			throw new IllegalArgumentException("'mailboxes' must be greater than 0");
+		}
+		this.rs = rs;
+		if (executor == null) {
+			this.ownedExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "rivescript-reply-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.executor = this.ownedExecutor;
+		} else {
+			this.ownedExecutor = null;
+			this.executor = executor;
+		}
+		if (mailboxPerUser) {
+			this.mailboxes = null;
+			this.userMailboxes = new ConcurrentHashMap<>();
+		} else {
+			this.mailboxes = new Mailbox[mailboxes];
+			for (int i = 0; i < mailboxes; i++) {
+				this.mailboxes[i] = new Mailbox(null);
+			}
+			this.userMailboxes = null;
+		}
+	}
+
+	/**
+	 * Submits a message to the user's mailbox and returns the future reply.
+	 *
+	 * @param username the username
+	 * @param message  the user's message
+	 * @return the future reply
+	 * @throws RejectedExecutionException in case the executor does not accept the task
+	 */
+	public Future<String> submit(final String username, final String message) {
+		return submit(username, new Callable<String>() {
+
+			@Override
+			public String call() {
+				return rs.reply(username, message);
+			}
+		});
+	}
+
+	/**
+	 * Submits a task to the user's mailbox. The task is run after all previously submitted tasks of the same user completed.
+	 *
+	 * @param username the username
+	 * @param task     the task
+	 * @param <T>      the result type
+	 * @return the future result
+	 * @throws RejectedExecutionException in case the executor does not accept the task
+	 */
+	public <T> Future<T> submit(String username, Callable<T> task) {
+		FutureTask<T> future = new FutureTask<>(task);
+		execute(username, future);
+		return future;
+	}
+
+	/**
+	 * Submits a future task to the user's mailbox. The task is run after all previously submitted tasks of the same user completed.
+	 * <p>
+	 * Queued tasks are cancelled when the executor rejects their mailbox; override {@link FutureTask#done()} to be notified.
+	 *
+	 * @param username the username
+	 * @param task     the task
+	 * @throws RejectedExecutionException in case the executor does not accept the task
+	 */
+	public void execute(String username, FutureTask<?> task) {
+		if (mailboxes != null) {
+			mailboxes[(username.hashCode() & 0x7fffffff) % mailboxes.length].execute(task);
+			return;
+		}
+		while (true) {
+			Mailbox mailbox = userMailboxes.get(username);
+			if (mailbox == null) {
+				Mailbox created = new Mailbox(username);
+				mailbox = userMailboxes.putIfAbsent(username, created);
+				if (mailbox == null) {
+					mailbox = created;
+				}
+			}
+			if (mailbox.execute(task)) {
+				return;
+			}
+			// The mailbox was removed while idle, retry with a new one.
+		}
+	}
+
+	/**
+	 * Shuts down the thread pool if this dispatcher created its own. Already submitted tasks are still processed.
+	 */
+	@Override
+	public void close() {
+		if (ownedExecutor != null) {
+			ownedExecutor.shutdown();
+		}
+	}
+
+	/**
+	 * Queue of tasks which runs at most one task at a time on the executor.
+	 */
+	private class Mailbox implements Runnable {
+
+		private final String username;
+		private final Queue<FutureTask<?>> tasks = new ArrayDeque<>();
+		private boolean scheduled;
+		private boolean removed;
+
+		/**
+		 * @param username the user owning this mailbox, or {@code null} for a mailbox shared by the users hashed to it
+		 */
+		Mailbox(String username) {
+			this.username = username;
+		}
+
+		/**
+		 * Queues a task, returning {@code false} if this mailbox was already removed.
+		 */
+		boolean execute(FutureTask<?> task) {
+			synchronized (this) {
+				if (removed) {
+					return false;
+				}
+				tasks.add(task);
+				if (scheduled) {
+					return true;
+				}
+				scheduled = true;
+			}
+			schedule();
+			return true;
+		}
+
+		@Override
+		public void run() {
+			for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+				FutureTask<?> task;
+				synchronized (this) {
+					task = tasks.poll();
+					if (task == null) {
+						idle();
+						return;
+					}
+				}
+				task.run();
+			}
+			// Give other mailboxes a chance before continuing with the remaining tasks.
+			synchronized (this) {
+				if (tasks.isEmpty()) {
+					idle();
+					return;
+				}
+			}
+			schedule();
+		}
+
+		private void schedule() {
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {
+				logger.warn("Executor rejected mailbox, cancelling queued replies: {}", e.getMessage());
+				synchronized (this) {
+					for (FutureTask<?> task : tasks) {
+						task.cancel(false);
+					}
+					tasks.clear();
+					idle();
+				}
+				throw e;
+			}
+		}
+
+		/**
+		 * Marks this mailbox as idle, removing it if it is owned by a single user. Must be called while holding its lock.
+		 */
+		private void idle() {
+			scheduled = false;
+			if (username != null) {
+				removed = true;
+				userMailboxes.remove(username, this);
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript;
+
+/**
+ * A user's message to reply to, used by {@link RiveScript#replyBatch(java.util.List)}.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class ReplyRequest {
+
+	private final String username;
+	private final String message;
+
+	/**
+	 * Creates a new {@link ReplyRequest}.
+	 *
+	 * @param username the username
+	 * @param message  the user's message
+	 */
+	public ReplyRequest(String username, String message) {
+		this.username = username;
+		this.message = message;
+	}
+
+	/**
+	 * Returns the username.
+	 *
+	 * @return the username
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns the user's message.
+	 *
+	 * @return the user's message
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		ReplyRequest that = (ReplyRequest) o;
+		if (username != null ? !username.equals(that.username) : that.username != null) {
+			return false;
+		}
+		return message != null ? message.equals(that.message) : that.message == null;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = username != null ? username.hashCode() : 0;
+		result = 31 * result + (message != null ? message.hashCode() : 0);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "ReplyRequest{" +
+				"username='" + username + '\'' +
+				", message='" + message + '\'' +
+				'}';
+	}
+}
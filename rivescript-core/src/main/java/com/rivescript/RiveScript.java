@@ -26,16 +26,24 @@ import com.rivescript.ast.ObjectMacro;
 import com.rivescript.ast.Root;
 import com.rivescript.ast.Topic;
 import com.rivescript.ast.Trigger;
+import com.rivescript.exception.DeadlineExceededException;
 import com.rivescript.exception.DeepRecursionException;
 import com.rivescript.exception.NoDefaultTopicException;
+import com.rivescript.exception.OverloadedException;
+import com.rivescript.exception.RateLimitedException;
 import com.rivescript.exception.RepliesNotSortedException;
 import com.rivescript.exception.ReplyNotFoundException;
 import com.rivescript.exception.ReplyNotMatchedException;
+import com.rivescript.macro.ContextualObjectHandler;
+import com.rivescript.macro.ContextualSubroutine;
 import com.rivescript.macro.ObjectHandler;
 import com.rivescript.macro.Subroutine;
 import com.rivescript.parser.Parser;
 import com.rivescript.parser.ParserConfig;
 import com.rivescript.parser.ParserException;
+import com.rivescript.regexp.Alternations;
+import com.rivescript.regexp.BudgetedCharSequence;
+import com.rivescript.regexp.TriggerAnalyzer;
 import com.rivescript.session.ConcurrentHashMapSessionManager;
 import com.rivescript.session.History;
 import com.rivescript.session.SessionManager;
@@ -44,7 +52,12 @@ import com.rivescript.session.UserData;
 import com.rivescript.sorting.SortBuffer;
 import com.rivescript.sorting.SortTrack;
 import com.rivescript.sorting.SortedTriggerEntry;
+import com.rivescript.util.BoundedCache;
+import com.rivescript.util.SingleFlight;
+import com.rivescript.util.StringTrie;
 import com.rivescript.util.StringUtils;
+import com.rivescript.util.Tokens;
+import com.rivescript.util.Vocabulary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,17 +71,30 @@ import java.io.IOException;
 import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static com.rivescript.regexp.Regexp.RE_ANY_TAG;
 import static com.rivescript.regexp.Regexp.RE_ARRAY;
@@ -137,6 +163,9 @@ public class RiveScript {
 	public static final String CANNOT_DIVIDE_BY_ZERO_KEY = "cannotDivideByZero";
 	public static final String CANNOT_MATH_VARIABLE_KEY = "cannotMathVariable";
 	public static final String CANNOT_MATH_VALUE_KEY = "cannotMathValue";
+	public static final String OVERLOADED_KEY = "overloaded";
+	public static final String RATE_LIMITED_KEY = "rateLimited";
+	public static final String DEADLINE_EXCEEDED_KEY = "deadlineExceeded";
 
 	public static final String DEFAULT_DEEP_RECURSION_MESSAGE = "ERR: Deep Recursion Detected";
 	public static final String DEFAULT_REPLIES_NOT_SORTED_MESSAGE = "ERR: Replies Not Sorted";
@@ -147,6 +176,9 @@ public class RiveScript {
 	public static final String DEFAULT_CANNOT_DIVIDE_BY_ZERO_MESSAGE = "[ERR: Can't Divide By Zero]";
 	public static final String DEFAULT_CANNOT_MATH_VARIABLE_MESSAGE = "[ERR: Can't perform math operation on non-numeric variable]";
 	public static final String DEFAULT_CANNOT_MATH_VALUE_MESSAGE = "[ERR: Can't perform math operation on non-numeric value]";
+	public static final String DEFAULT_OVERLOADED_MESSAGE = "ERR: Too Busy, Please Try Again Later";
+	public static final String DEFAULT_RATE_LIMITED_MESSAGE = "ERR: Too Many Messages, Please Slow Down";
+	public static final String DEFAULT_DEADLINE_EXCEEDED_MESSAGE = "ERR: Reply Took Too Long";
 
 	public static final String UNDEFINED = "undefined";
 
@@ -156,6 +188,9 @@ public class RiveScript {
 
 	private static final String UNDEF_TAG = "<undef>";
 
+	private static final int ARRAY_INDEX_SIZE = 32;
+	private static final Pattern RE_ALTERNATION = Pattern.compile("\\(([^()\\[\\]]+)\\)");
+
 	private static Logger logger = LoggerFactory.getLogger(RiveScript.class);
 
 	private boolean throwExceptions;
@@ -174,7 +209,16 @@ public class RiveScript {
 	private Map<String, String> sub;                    // 'sub' substitutions
 	private Map<String, String> person;                 // 'person' substitutions
 	private Map<String, List<String>> array;            // 'array' definitions
+	private Map<String, StringTrie> arrayIndex;         // large arrays, indexed by sortReplies()
+	private Map<String, String> arrayRegexps;           // array alternations, factored by sortReplies()
+	private Map<String, Map.Entry<SortedTriggerEntry, List<String>>> redirectTargets; // static redirects, resolved by sortReplies()
+	private Vocabulary vocabulary;                      // words interned by sortReplies()
 	private SessionManager sessions;                    // user variable session manager
+	private Executor executor;                          // executor for asynchronous replies
+	private AdmissionController admissionController;    // optional load shedding in front of replies
+	private int regexBudget;                            // max characters examined per trigger match attempt
+	private int replyCacheSize;                         // max pure replies remembered
+	private int matchCacheSize;                         // max trigger matches remembered
 	private Map<String, Map<String, Boolean>> includes; // included topics
 	private Map<String, Map<String, Boolean>> inherits; // inherited topics
 	private Map<String, String> objectLanguages;        // object macro languages
@@ -184,7 +228,12 @@ public class RiveScript {
 	private SortBuffer sorted;                          // Sorted data from sortReplies()
 
 	// State information.
-	private ThreadLocal<String> currentUser = new ThreadLocal<>();
+	private volatile ReplyDispatcher dispatcher;
+	private final AtomicLong regexBudgetExceeded = new AtomicLong();
+	private BoundedCache<String, Map.Entry<String, String>> replyCache; // pure replies by topic and message
+	private BoundedCache<String, Map.Entry<SortedTriggerEntry, List<String>>> matchCache; // matches and stars by topic and message
+	private SingleFlight<String, Map.Entry<String, String>> replyFlights; // pure replies being computed by topic and message
+	private ThreadLocal<String> currentUser = new ThreadLocal<>();   // only set while invoking object macros
 
 	/*------------------*/
 	/*-- Constructors --*/
@@ -214,6 +263,20 @@ public class RiveScript {
 		this.concat = config.getConcat();
 		this.depth = config.getDepth();
 		this.sessions = config.getSessionManager();
+		this.executor = config.getExecutor();
+		this.admissionController = config.getAdmissionController();
+		this.regexBudget = config.getRegexBudget();
+		this.replyCacheSize = Math.max(0, config.getReplyCacheSize());
+		if (this.replyCacheSize > 0) {
+			this.replyCache = new BoundedCache<>(this.replyCacheSize);
+		}
+		this.matchCacheSize = Math.max(0, config.getMatchCacheSize());
+		if (this.matchCacheSize > 0) {
+			this.matchCache = new BoundedCache<>(this.matchCacheSize);
+		}
+		if (config.isCoalesceReplies()) {
+			this.replyFlights = new SingleFlight<>();
+		}
 
 		String unicodePunctuation = config.getUnicodePunctuation();
 		if (unicodePunctuation == null) {
@@ -231,6 +294,9 @@ public class RiveScript {
 		this.errorMessages.put(CANNOT_DIVIDE_BY_ZERO_KEY, DEFAULT_CANNOT_DIVIDE_BY_ZERO_MESSAGE);
 		this.errorMessages.put(CANNOT_MATH_VARIABLE_KEY, DEFAULT_CANNOT_MATH_VARIABLE_MESSAGE);
 		this.errorMessages.put(CANNOT_MATH_VALUE_KEY, DEFAULT_CANNOT_MATH_VALUE_MESSAGE);
+		this.errorMessages.put(OVERLOADED_KEY, DEFAULT_OVERLOADED_MESSAGE);
+		this.errorMessages.put(RATE_LIMITED_KEY, DEFAULT_RATE_LIMITED_MESSAGE);
+		this.errorMessages.put(DEADLINE_EXCEEDED_KEY, DEFAULT_DEADLINE_EXCEEDED_MESSAGE);
 
 		if (config.getErrorMessages() != null) {
 			for (Map.Entry<String, String> entry : config.getErrorMessages().entrySet()) {
@@ -267,6 +333,10 @@ public class RiveScript {
 		this.sub = new HashMap<>();
 		this.person = new HashMap<>();
 		this.array = new HashMap<>();
+		this.arrayIndex = new HashMap<>();
+		this.arrayRegexps = new HashMap<>();
+		this.redirectTargets = new HashMap<>();
+		this.vocabulary = Vocabulary.EMPTY;
 		this.includes = new HashMap<>();
 		this.inherits = new HashMap<>();
 		this.objectLanguages = new HashMap<>();
@@ -345,6 +415,78 @@ public class RiveScript {
 		return depth;
 	}
 
+	/**
+	 * Returns the regexp budget: the number of input characters a trigger's regexp may examine per match, or {@code 0} for no limit.
+	 *
+	 * @return the regexp budget
+	 */
+	public int getRegexBudget() {
+		return regexBudget;
+	}
+
+	/**
+	 * Returns the number of trigger match attempts which exceeded the regexp budget and were treated as non-matches.
+	 *
+	 * @return the number of match attempts exceeding the regexp budget
+	 */
+	public long getRegexBudgetExceededCount() {
+		return regexBudgetExceeded.get();
+	}
+
+	/**
+	 * Returns the maximum number of pure replies remembered, or {@code 0} if the reply cache is disabled.
+	 *
+	 * @return the reply cache size
+	 */
+	public int getReplyCacheSize() {
+		return replyCacheSize;
+	}
+
+	/**
+	 * Returns the number of replies served from the reply cache.
+	 *
+	 * @return the number of reply cache hits
+	 */
+	public long getReplyCacheHitCount() {
+		return replyCache != null ? replyCache.getHitCount() : 0;
+	}
+
+	/**
+	 * Returns the maximum number of trigger matches remembered, or {@code 0} if the match cache is disabled.
+	 *
+	 * @return the match cache size
+	 */
+	public int getMatchCacheSize() {
+		return matchCacheSize;
+	}
+
+	/**
+	 * Returns the number of trigger matches served from the match cache.
+	 *
+	 * @return the number of match cache hits
+	 */
+	public long getMatchCacheHitCount() {
+		return matchCache != null ? matchCache.getHitCount() : 0;
+	}
+
+	/**
+	 * Returns whether concurrent requests for the same pure reply are coalesced.
+	 *
+	 * @return whether replies are coalesced
+	 */
+	public boolean isCoalesceReplies() {
+		return replyFlights != null;
+	}
+
+	/**
+	 * Returns the number of requests which waited for the reply of a concurrent request for the same message.
+	 *
+	 * @return the number of coalesced requests
+	 */
+	public long getCoalescedReplyCount() {
+		return replyFlights != null ? replyFlights.getCoalescedCount() : 0;
+	}
+
 	/**
 	 * Returns the unicode punctuation pattern.
 	 *
@@ -583,6 +725,44 @@ public class RiveScript {
 		return false;
 	}
 
+	/**
+	 * Matches a trigger's regexp against the input within the configured regexp budget.
+	 * <p>
+	 * A match attempt exceeding the budget (e.g. due to catastrophic backtracking) is treated as a non-match and counted,
+	 * see {@link #getRegexBudgetExceededCount()}.
+	 *
+	 * @param re      the trigger's regexp
+	 * @param input   the input to match
+	 * @param trigger the trigger, for logging
+	 * @return the matcher positioned on the match, or {@code null} if the input does not match
+	 */
+	private Matcher matchTrigger(Pattern re, String input, String trigger) {
+		if (this.regexBudget <= 0) {
+			Matcher matcher = re.matcher(input);
+			return matcher.find() ? matcher : null;
+		}
+		Matcher matcher = re.matcher(new BudgetedCharSequence(input, this.regexBudget));
+		try {
+			return matcher.find() ? matcher : null;
+		} catch (BudgetedCharSequence.BudgetExceededException e) {
+			this.regexBudgetExceeded.incrementAndGet();
+			logger.warn("Regexp budget exceeded while matching trigger '{}', treating it as a non-match", trigger);
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the deadline of the reply has passed.
+	 *
+	 * @param context the reply context
+	 * @throws DeadlineExceededException in case the deadline has passed
+	 */
+	private void checkDeadline(ReplyContext context) throws DeadlineExceededException {
+		if (context.isExpired()) {
+			throw new DeadlineExceededException(this.errorMessages.get(DEADLINE_EXCEEDED_KEY));
+		}
+	}
+
 	/*---------------------*/
 	/*-- Loading Methods --*/
 	/*---------------------*/
@@ -868,6 +1048,13 @@ public class RiveScript {
 		this.sorted.getThats().clear();
 		logger.debug("Sorting triggers...");
 
+		// Prepare the arrays for matching.
+		indexArrays();
+
+		// Triggers shared by topics are only reported once.
+		Set<String> analyzed = new HashSet<>();
+		Map<SortedTriggerEntry, List<String>> words = new HashMap<>();
+
 		// Loop through all the topics.
 		for (String topic : this.topics.keySet()) {
 			logger.debug("Analyzing topic {}", topic);
@@ -878,19 +1065,296 @@ public class RiveScript {
 
 			// Sort these triggers.
 			this.sorted.addTopic(topic, sortTriggerSet(allTriggers, true));
+			analyzeTriggers(topic, this.sorted.getTopic(topic), analyzed, words);
 
 			// Get all of the %Previous triggers for this topic.
 			List<SortedTriggerEntry> thatTriggers = getTopicTriggers(topic, true, 0, 0, false);
 
 			// And sort them, too.
 			this.sorted.addThats(topic, sortTriggerSet(thatTriggers, false));
+			analyzeTriggers(topic, this.sorted.getThats(topic), analyzed, words);
 		}
 
+		// Intern the words of the triggers.
+		buildVocabulary(words);
+
+		// Find the triggers with matches and replies only depending on the topic and the message, and forget those of the old ones.
+		markMemoizable();
+		if (this.replyCache != null) {
+			this.replyCache.clear();
+		}
+		if (this.matchCache != null) {
+			this.matchCache.clear();
+		}
+
+		// Resolve the redirects without tags to the triggers they lead to.
+		resolveRedirects();
+
 		// Sort the substitution lists.
 		this.sorted.setSub(sortList(this.sub.keySet()));
 		this.sorted.setPerson(sortList(this.person.keySet()));
 	}
 
+	/**
+	 * Prepares the arrays for matching: the alternations of plain text arrays are factored, and the large ones are indexed, so
+	 * triggers referencing them only have to expand the entries occurring in the message.
+	 * <p>
+	 * Only plain text arrays are factored and indexed, as their entries match exactly their own text.
+	 */
+	private void indexArrays() {
+		this.arrayIndex.clear();
+		this.arrayRegexps.clear();
+		for (Map.Entry<String, List<String>> entry : this.array.entrySet()) {
+			List<String> values = entry.getValue();
+			if (!Alternations.isPlain(values)) {
+				continue;
+			}
+			this.arrayRegexps.put(entry.getKey(), "(?:" + Alternations.factor(values) + ")");
+			if (values.size() >= ARRAY_INDEX_SIZE) {
+				logger.debug("Indexing array {} of {} entries", entry.getKey(), values.size());
+				this.arrayIndex.put(entry.getKey(), new StringTrie(values));
+			}
+		}
+	}
+
+	/**
+	 * Interns the literal words of the triggers, arrays and substitutions into the vocabulary, and resolves the words required by
+	 * the triggers to their ids.
+	 *
+	 * @param words the words required by the triggers
+	 */
+	private void buildVocabulary(Map<SortedTriggerEntry, List<String>> words) {
+		Set<String> all = new LinkedHashSet<>();
+		for (List<String> required : words.values()) {
+			all.addAll(required);
+		}
+		for (List<String> values : this.array.values()) {
+			for (String value : values) {
+				all.addAll(Arrays.asList(value.split(" ")));
+			}
+		}
+		for (Map<String, String> substitutions : Arrays.asList(this.sub, this.person)) {
+			for (Map.Entry<String, String> entry : substitutions.entrySet()) {
+				all.addAll(Arrays.asList(entry.getKey().split(" ")));
+				all.addAll(Arrays.asList(entry.getValue().split(" ")));
+			}
+		}
+		this.vocabulary = new Vocabulary(all);
+		logger.debug("Interned {} words", this.vocabulary.size());
+
+		for (Map.Entry<SortedTriggerEntry, List<String>> entry : words.entrySet()) {
+			entry.getKey().setWordIds(this.vocabulary.getIds(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Marks the triggers whose match or reply only depends on the topic and the message, so it can be remembered.
+	 * <p>
+	 * A match qualifies if neither the trigger nor any trigger sorted before it depends on user state, as that trigger could match
+	 * first for another user. A reply qualifies if its match qualifies and the trigger is pure. Topics with {@code %Previous} triggers
+	 * never qualify for replies, as those depend on the bot's last reply.
+	 */
+	private void markMemoizable() {
+		for (String topic : this.topics.keySet()) {
+			List<String> allTopics = new ArrayList<>(Arrays.asList(topic));
+			if (this.includes.get(topic).size() > 0 || this.inherits.get(topic).size() > 0) {
+				allTopics = getTopicTree(topic, 0);
+			}
+			boolean stateless = true;
+			for (String top : allTopics) {
+				if (this.sorted.getThats(top).size() > 0) {
+					stateless = false;
+				}
+			}
+			boolean deterministic = true;
+			for (SortedTriggerEntry trigger : this.sorted.getTopic(topic)) {
+				if (trigger.getTrigger().contains("<")) {
+					deterministic = false;
+				}
+				trigger.setDeterministic(deterministic);
+				trigger.setMemoizable(stateless && deterministic && isPure(trigger.getPointer()));
+			}
+		}
+	}
+
+	/**
+	 * Resolves the static redirects of each topic to the trigger they redirect to and its stars, so following them does not need to
+	 * match the triggers again, and warns about static redirects leading back to themselves.
+	 * <p>
+	 * A redirect is only resolved if the target does not depend on user state, like a match in the match cache.
+	 */
+	private void resolveRedirects() {
+		this.redirectTargets.clear();
+		for (String topic : this.topics.keySet()) {
+			List<SortedTriggerEntry> triggers = this.sorted.getTopic(topic);
+			for (SortedTriggerEntry trigger : triggers) {
+				String redirect = trigger.getPointer().getRedirect();
+				if (!isStaticRedirect(redirect)) {
+					continue;
+				}
+				String key = topic + ":" + redirect.toLowerCase();
+				if (!this.redirectTargets.containsKey(key)) {
+					Map.Entry<SortedTriggerEntry, List<String>> target = resolveRedirect(triggers, redirect.toLowerCase());
+					if (target != null) {
+						this.redirectTargets.put(key, target);
+					}
+				}
+			}
+
+			// Follow the static redirects from each trigger, until one leads back to a trigger on the way.
+			Set<SortedTriggerEntry> followed = new HashSet<>();
+			for (SortedTriggerEntry trigger : triggers) {
+				List<SortedTriggerEntry> path = new ArrayList<>();
+				SortedTriggerEntry current = trigger;
+				while (current != null && !followed.contains(current)) {
+					int index = path.indexOf(current);
+					if (index >= 0) {
+						StringBuilder cycle = new StringBuilder();
+						for (SortedTriggerEntry entry : path.subList(index, path.size())) {
+							cycle.append(entry.getTrigger()).append(" -> ");
+						}
+						logger.warn("Redirect cycle in topic {}: {}", topic, cycle.append(current.getTrigger()));
+						break;
+					}
+					path.add(current);
+					String redirect = current.getPointer().getRedirect();
+					Map.Entry<SortedTriggerEntry, List<String>> target = null;
+					if (isStaticRedirect(redirect)) {
+						target = this.redirectTargets.get(topic + ":" + redirect.toLowerCase());
+					}
+					current = target != null ? target.getKey() : null;
+				}
+				followed.addAll(path);
+			}
+		}
+	}
+
+	/**
+	 * Returns the trigger matching a static redirect and its stars, or {@code null} if none matches or the match depends on user
+	 * state.
+	 * <p>
+	 * Atomic triggers are only resolved when their text equals the redirect.
+	 *
+	 * @param triggers the sorted triggers of the topic
+	 * @param message  the redirect
+	 * @return the trigger and its stars, or {@code null}
+	 */
+	private Map.Entry<SortedTriggerEntry, List<String>> resolveRedirect(List<SortedTriggerEntry> triggers, String message) {
+		for (SortedTriggerEntry trigger : triggers) {
+			if (!trigger.isDeterministic()) {
+				return null;
+			}
+			String pattern = trigger.getTrigger();
+			Pattern re = trigger.getPattern();
+			String regexp = re != null ? re.pattern() : triggerRegexp(null, pattern, message);
+			List<String> stars = new ArrayList<>();
+			if (isAtomic(pattern) && message.equals(regexp)) {
+				return new AbstractMap.SimpleImmutableEntry<>(trigger, stars);
+			}
+			if (re == null) {
+				re = Pattern.compile("^" + regexp + "$");
+			}
+			Matcher matcher = matchTrigger(re, message, pattern);
+			if (matcher == null) {
+				continue;
+			}
+			if (isAtomic(pattern)) {
+				// Only exact matches of atomic triggers are resolved, others are left to the lookup at runtime.
+				return null;
+			}
+			for (int i = 1; i <= matcher.groupCount(); i++) {
+				stars.add(matcher.group(i));
+			}
+			return new AbstractMap.SimpleImmutableEntry<>(trigger, stars);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns whether a redirect is static: it has no tags, so it always redirects to the same message.
+	 *
+	 * @param redirect the redirect
+	 * @return whether the redirect is static
+	 */
+	private boolean isStaticRedirect(String redirect) {
+		return redirect != null && redirect.length() > 0 && !redirect.contains("<") && !redirect.contains("{")
+				&& !redirect.contains("(") && !redirect.contains("\\");
+	}
+
+	/**
+	 * Returns whether a trigger is pure: it has no tags, conditions or redirect, and a single reply without tags, random parts or
+	 * weights, so it always gives the same reply to the same message.
+	 *
+	 * @param trigger the trigger
+	 * @return whether the trigger is pure
+	 */
+	private boolean isPure(Trigger trigger) {
+		if (trigger.getTrigger().contains("<") || trigger.getCondition().size() > 0
+				|| (trigger.getRedirect() != null && trigger.getRedirect().length() > 0) || trigger.getReply().size() != 1) {
+			return false;
+		}
+		String reply = trigger.getReply().get(0);
+		return !reply.contains("<") && !reply.contains("{") && !reply.contains("@");
+	}
+
+	/**
+	 * Returns whether a trigger references an indexed array.
+	 *
+	 * @param pattern the trigger
+	 * @return whether the trigger references an indexed array
+	 */
+	private boolean hasIndexedArray(String pattern) {
+		Matcher matcher = RE_ARRAY.matcher(pattern);
+		while (matcher.find()) {
+			if (this.arrayIndex.containsKey(matcher.group(1))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Analyzes the sorted triggers of a topic, reporting the expensive ones and precompiling their regexps.
+	 * <p>
+	 * Triggers with tags depend on variables or history, and triggers with indexed arrays on the message, so their regexps are still
+	 * prepared per message.
+	 *
+	 * @param topic    the topic
+	 * @param triggers the sorted triggers
+	 * @param analyzed the triggers which were already reported
+	 * @param words    the words required by the triggers, filled in by this method
+	 */
+	private void analyzeTriggers(String topic, List<SortedTriggerEntry> triggers, Set<String> analyzed,
+			Map<SortedTriggerEntry, List<String>> words) {
+		// Indexed arrays are not scanned branch by branch.
+		Map<String, List<String>> scanned = new HashMap<>(this.array);
+		scanned.keySet().removeAll(this.arrayIndex.keySet());
+
+		for (SortedTriggerEntry trigger : triggers) {
+			String pattern = trigger.getTrigger();
+			if (isAtomic(pattern)) {
+				continue;
+			}
+			TriggerAnalyzer.Analysis analysis = TriggerAnalyzer.analyze(pattern, scanned);
+			trigger.setCost(analysis.getCost());
+			words.put(trigger, analysis.getWords());
+			if (analyzed.add(pattern)) {
+				logger.debug("Trigger '{}' in topic {} has cost {}", pattern, topic, analysis.getCost());
+				for (String warning : analysis.getWarnings()) {
+					logger.warn("Trigger '{}' in topic {}: {}", pattern, topic, warning);
+				}
+			}
+			if (!pattern.contains("<") && !hasIndexedArray(pattern)) {
+				String regexp = TriggerAnalyzer.optimize(triggerRegexp(null, pattern, null));
+				try {
+					trigger.setPattern(Pattern.compile("^" + regexp + "$"));
+				} catch (PatternSyntaxException e) {
+					logger.warn("Trigger '{}' in topic {} has an invalid regexp: {}", pattern, topic, e.getDescription());
+				}
+			}
+		}
+	}
+
 	/**
 	 * Recursively scans topics and collects triggers therein.
 	 * <p>
@@ -1327,64 +1791,254 @@ public class RiveScript {
 	 * @throws RiveScriptException in case of an exception and exception throwing is enabled
 	 */
 	public String reply(String username, String message) throws RiveScriptException {
-		logger.debug("Asked to reply to [{}] {}", username, message);
+		return reply(new ReplyContext(username, this.sessions), message);
+	}
 
-		long startTime = System.currentTimeMillis();
+	/**
+	 * Returns a reply from the bot for a user's message, giving up when the reply takes longer than the given timeout.
+	 * <p>
+	 * The deadline is checked cooperatively: while scanning triggers, on every redirect, while processing tags and around object
+	 * macro calls. {@link ContextualSubroutine}s and {@link ContextualObjectHandler}s can check it with {@link ReplyContext#isExpired()}.
+	 * When the deadline passes the {@link #DEADLINE_EXCEEDED_KEY} error message is returned, and the message is not added to the
+	 * user's history.
+	 *
+	 * @param username the username
+	 * @param message  the user's message
+	 * @param timeout  the maximum time to spend on the reply
+	 * @param unit     the time unit of the timeout
+	 * @return the reply
+	 * @throws RiveScriptException in case of an exception and exception throwing is enabled
+	 */
+	public String reply(String username, String message, long timeout, TimeUnit unit) throws RiveScriptException {
+		ReplyContext context = new ReplyContext(username, this.sessions);
+		context.setDeadline(timeout, unit);
+		return reply(context, message);
+	}
+
+	/**
+	 * Returns a reply from the bot for a user's message, passing the admission controller (if any) first.
+	 */
+	private String reply(ReplyContext context, String message) {
+		String username = context.getUsername();
+		logger.debug("Asked to reply to [{}] {}", username, message);
 
-		// Store the current user's ID.
-		this.currentUser.set(username);
+		if (this.admissionController == null) {
+			return doReply(context, message);
+		}
 
+		// Shed load before doing any work.
+		AdmissionController.Permit permit = this.admissionController.admit(username);
+		if (!permit.isAdmitted()) {
+			if (permit.isRateLimited()) {
+				logger.debug("Rejected message of rate limited user {}", username);
+				String errorMessage = this.errorMessages.get(RATE_LIMITED_KEY);
+				if (this.throwExceptions) {
+					throw new RateLimitedException(errorMessage);
+				}
+				return errorMessage;
+			}
+			logger.debug("Rejected message of user {} due to overload", username);
+			String errorMessage = this.errorMessages.get(OVERLOADED_KEY);
+			if (this.throwExceptions) {
+				throw new OverloadedException(errorMessage);
+			}
+			return errorMessage;
+		}
 		try {
-			// Initialize a user profile for this user?
-			this.sessions.init(username);
+			return doReply(context, message);
+		} finally {
+			permit.release();
+		}
+	}
 
-			// Format their message.
-			message = formatMessage(message, false);
+	/**
+	 * Returns a reply from the bot for a user's message, once admitted.
+	 */
+	private String doReply(ReplyContext context, String message) {
+		String username = context.getUsername();
+
+		// Initialize a user profile for this user?
+		this.sessions.init(username);
 
-			String reply;
+		// Format their message.
+		message = formatMessage(message, false);
 
+		String reply;
+		try {
 			// If the BEGIN block exists, consult it first.
 			if (this.topics.containsKey("__begin__")) {
-				String begin = getReply(username, "request", true, 0);
+				String begin = getReply(context, "request", true, 0);
 
 				// OK to continue?
 				if (begin.contains("{ok}")) {
-					reply = getReply(username, message, false, 0);
+					reply = getReply(context, message, false, 0);
 					begin = begin.replaceAll("\\{ok\\}", reply);
 				}
 
 				reply = begin;
-				reply = processTags(username, message, reply, new ArrayList<String>(), new ArrayList<String>(), 0);
+				reply = processTags(context, message, reply, new ArrayList<String>(), new ArrayList<String>(), 0);
 			} else {
-				reply = getReply(username, message, false, 0);
+				reply = getReply(context, message, false, 0);
 			}
+		} catch (DeadlineExceededException e) {
+			logger.warn("Gave up replying to [{}] after {} ms", username, context.getElapsedTime());
+			if (this.throwExceptions) {
+				throw e;
+			}
+			return e.getMessage();
+		}
+
+		// Save their message history.
+		this.sessions.addHistory(username, message, reply);
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Replied [{}] to [{}] in {} ms", reply, username, context.getElapsedTime());
+		}
+
+		return reply;
+	}
+
+	/**
+	 * Returns a future reply from the bot for a user's message, computed on the configured {@link Config#getExecutor() executor}.
+	 * <p>
+	 * Replies of the same user are computed in the order they were requested, replies of different users in parallel
+	 * (see {@link ReplyDispatcher}). In case of an exception the future completes exceptionally.
+	 *
+	 * @param username the username
+	 * @param message  the user's message
+	 * @return the future reply
+	 */
+	public Future<String> replyAsync(String username, String message) {
+		return dispatcher().submit(username, message);
+	}
 
-			// Save their message history.
-			this.sessions.addHistory(username, message, reply);
+	/**
+	 * Computes a reply from the bot for a user's message on the configured {@link Config#getExecutor() executor}, and passes it to
+	 * the given callback.
+	 *
+	 * @param username the username
+	 * @param message  the user's message
+	 * @param callback the callback
+	 * @return the future reply
+	 * @see #replyAsync(String, String)
+	 */
+	public Future<String> replyAsync(final String username, final String message, final ReplyCallback callback) {
+		return dispatcher().submit(username, new Callable<String>() {
 
-			if (logger.isDebugEnabled()) {
-				long elapsedTime = System.currentTimeMillis() - startTime;
-				logger.debug("Replied [{}] to [{}] in {} ms", reply, username, elapsedTime);
+			@Override
+			public String call() {
+				String reply;
+				try {
+					reply = reply(username, message);
+				} catch (RuntimeException e) {
+					callback.onError(e);
+					throw e;
+				}
+				callback.onReply(reply);
+				return reply;
 			}
+		});
+	}
 
-			return reply;
+	/**
+	 * Returns the replies from the bot for a batch of user messages, in the order of the requests.
+	 * <p>
+	 * The requests are grouped by user: the messages of each user are processed in order as a single task on the configured
+	 * {@link Config#getExecutor() executor}, and different users are processed in parallel. Each user's session is initialized once,
+	 * before the first of its messages is processed.
+	 * <p>
+	 * In case of an exception and exception throwing is enabled a {@link RiveScriptException} is thrown, and the remaining messages
+	 * of the failing user are not processed.
+	 *
+	 * @param requests the requests
+	 * @return the replies
+	 * @throws RiveScriptException in case of an exception and exception throwing is enabled
+	 */
+	public List<String> replyBatch(List<ReplyRequest> requests) throws RiveScriptException {
+		// Group the indexes of the requests by user, keeping the order of the requests.
+		Map<String, List<Integer>> users = new LinkedHashMap<>();
+		for (int i = 0; i < requests.size(); i++) {
+			String username = requests.get(i).getUsername();
+			List<Integer> indexes = users.get(username);
+			if (indexes == null) {
+				indexes = new ArrayList<>();
+				users.put(username, indexes);
+			}
+			indexes.add(i);
+		}
+		logger.debug("Asked to reply to a batch of {} messages from {} users", requests.size(), users.size());
+
+		final String[] replies = new String[requests.size()];
+		final List<ReplyRequest> batch = requests;
+		List<Future<Void>> futures = new ArrayList<>(users.size());
+		for (Map.Entry<String, List<Integer>> entry : users.entrySet()) {
+			final String username = entry.getKey();
+			final List<Integer> indexes = entry.getValue();
+			futures.add(dispatcher().submit(username, new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					sessions.init(username);
+					for (int index : indexes) {
+						replies[index] = reply(username, batch.get(index).getMessage());
+					}
+					return null;
+				}
+			}));
+		}
 
-		} finally {
-			// Unset the current user's ID.
-			this.currentUser.remove();
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RiveScriptException("Interrupted while waiting for batch replies", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new RiveScriptException("Error replying to batch", e.getCause());
+			}
 		}
+		return Arrays.asList(replies);
+	}
+
+	/**
+	 * Returns the dispatcher for asynchronous replies, creating it on first use.
+	 *
+	 * @return the dispatcher
+	 */
+	private ReplyDispatcher dispatcher() {
+		ReplyDispatcher dispatcher = this.dispatcher;
+		if (dispatcher == null) {
+			synchronized (this) {
+				dispatcher = this.dispatcher;
+				if (dispatcher == null) {
+					dispatcher = new ReplyDispatcher(this, this.executor);
+					this.dispatcher = dispatcher;
+				}
+			}
+		}
+		return dispatcher;
 	}
 
 	/**
 	 * Returns a reply from the bot for a user's message.
 	 *
-	 * @param username the username
-	 * @param message  the user's message
-	 * @param isBegin  whether this reply is for the {@code BEGIN} block context or not.
-	 * @param step     the recursion depth counter
+	 * @param context the reply context
+	 * @param message the user's message
+	 * @param isBegin whether this reply is for the {@code BEGIN} block context or not.
+	 * @param step    the recursion depth counter
 	 * @return the reply
 	 */
-	private String getReply(String username, String message, boolean isBegin, int step) {
+	private String getReply(ReplyContext context, String message, boolean isBegin, int step) {
+		String username = context.getUsername();
+		context.setDepth(step);
+		if (step == 0) {
+			context.clearRedirects();
+		}
+		checkDeadline(context);
+
 		// Needed to sort replies?
 		if (this.sorted.getTopics().size() == 0) {
 			logger.warn("You forgot to call sortReplies()!");
@@ -1400,9 +2054,6 @@ public class RiveScript {
 		if (topic == null) {
 			topic = "random";
 		}
-		List<String> stars = new ArrayList<>();
-		List<String> thatStars = new ArrayList<>();
-		String reply = null;
 
 		// Avoid letting them fall into a missing topic.
 		if (!this.topics.containsKey(topic)) {
@@ -1431,10 +2082,76 @@ public class RiveScript {
 			return errorMessage;
 		}
 
+		// Pure replies only depend on the topic and the message.
+		String cacheKey = null;
+		if ((this.replyCache != null || this.replyFlights != null) && !isBegin && step == 0) {
+			cacheKey = topic + ":" + message;
+			Map.Entry<String, String> cached = this.replyCache != null ? this.replyCache.get(cacheKey) : null;
+			if (cached != null) {
+				logger.debug("Found a remembered reply for {}", message);
+				this.sessions.setLastMatch(username, cached.getKey());
+				return cached.getValue();
+			}
+		}
+		if (cacheKey == null || this.replyFlights == null) {
+			return getReply(context, message, topic, isBegin, step, cacheKey, null);
+		}
+
+		// Let a single request compute the reply to the same message in the same topic, and the concurrent ones wait for it.
+		SingleFlight.Call<Map.Entry<String, String>> flight = this.replyFlights.join(cacheKey);
+		if (flight.isLeader()) {
+			try {
+				return getReply(context, message, topic, isBegin, step, cacheKey, flight);
+			} finally {
+				this.replyFlights.leave(cacheKey, flight);
+			}
+		}
+		logger.debug("Waiting for the reply to {} of a concurrent request", message);
+		try {
+			if (!flight.await(context.getRemainingTime(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS)) {
+				checkDeadline(context);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Map.Entry<String, String> shared = flight.getResult();
+		if (shared != null) {
+			this.sessions.setLastMatch(username, shared.getKey());
+			return shared.getValue();
+		}
+
+		// The reply turned out not to be pure, so compute our own.
+		return getReply(context, message, topic, isBegin, step, cacheKey, null);
+	}
+
+	/**
+	 * Returns a reply from the bot for a user's message in the given topic, by matching the message against the triggers.
+	 *
+	 * @param context  the reply context
+	 * @param message  the user's message
+	 * @param topic    the user's topic
+	 * @param isBegin  whether this reply is for the {@code BEGIN} block context or not.
+	 * @param step     the recursion depth counter
+	 * @param cacheKey the key to remember a pure reply with, or {@code null}
+	 * @param flight   the coalesced requests to share a pure reply with, or {@code null}
+	 * @return the reply
+	 */
+	private String getReply(ReplyContext context, String message, String topic, boolean isBegin, int step, String cacheKey,
+			SingleFlight.Call<Map.Entry<String, String>> flight) {
+		String username = context.getUsername();
+		List<String> stars = new ArrayList<>();
+		List<String> thatStars = new ArrayList<>();
+		String reply = null;
+
+		// Split the message into its words once, for the triggers to check the words they require.
+		// A message without any known word only gets to try the triggers which don't require words, like catch-alls.
+		Tokens tokens = new Tokens(message, this.vocabulary);
+
 		// Create a pointer for the matched data when we find it.
 		Trigger matched = null;
 		String matchedTrigger = null;
 		boolean foundMatch = false;
+		boolean memoizable = false;
 
 		// See if there were any %Previous's in this topic, or any topic related to it.
 		// This should only be done the first time -- not during a recursive redirection.
@@ -1460,18 +2177,26 @@ public class RiveScript {
 
 					// Format the bot's reply the same way as the human's.
 					lastReply = formatMessage(lastReply, true);
+					Tokens lastReplyTokens = new Tokens(lastReply, this.vocabulary);
 					logger.debug("Bot's last reply: {}", lastReply);
 
 					// See if it's a match.
 					for (SortedTriggerEntry trigger : this.sorted.getThats(top)) {
+						checkDeadline(context);
 						String pattern = trigger.getPointer().getPrevious();
-						String botside = triggerRegexp(username, pattern);
+						if (!lastReplyTokens.containsAll(trigger.getWordIds())) {
+							continue;
+						}
+						Pattern re = trigger.getPattern();
+						String botside = re != null ? re.pattern() : triggerRegexp(username, pattern, lastReply);
 						logger.debug("Try to match lastReply {} to {} ({})", lastReply, pattern, botside);
 
 						// Match?
-						Pattern re = Pattern.compile("^" + botside + "$");
-						Matcher matcher = re.matcher(lastReply);
-						if (matcher.find()) {
+						if (re == null) {
+							re = Pattern.compile("^" + botside + "$");
+						}
+						Matcher matcher = matchTrigger(re, lastReply, pattern);
+						if (matcher != null) {
 							// Huzzah! See if OUR message is right too...
 							logger.debug("Bot side matched!");
 
@@ -1482,7 +2207,7 @@ public class RiveScript {
 
 							// Compare the triggers to the user's message.
 							Trigger userSide = trigger.getPointer();
-							String regexp = triggerRegexp(username, userSide.getTrigger());
+							String regexp = triggerRegexp(username, userSide.getTrigger(), message);
 							logger.debug("Try to match {} against {} ({})", message, userSide.getTrigger(), regexp);
 
 							// If the trigger is atomic, we don't need to deal with the regexp engine.
@@ -1493,8 +2218,8 @@ public class RiveScript {
 								}
 							} else {
 								re = Pattern.compile("^" + regexp + "$");
-								matcher = re.matcher(message);
-								if (matcher.find()) {
+								matcher = matchTrigger(re, message, userSide.getTrigger());
+								if (matcher != null) {
 									isMatch = true;
 
 									// Get the user's message stars.
@@ -1518,12 +2243,50 @@ public class RiveScript {
 			}
 		}
 
+		// Follow a static redirect straight to the trigger it was resolved to.
+		Map.Entry<SortedTriggerEntry, List<String>> rememberedMatch = null;
+		if (!foundMatch && step > 0) {
+			rememberedMatch = this.redirectTargets.get(topic + ":" + message);
+			if (rememberedMatch != null) {
+				logger.debug("Found the resolved redirect to {}", message);
+				matched = rememberedMatch.getKey().getPointer();
+				foundMatch = true;
+				matchedTrigger = rememberedMatch.getKey().getTrigger();
+				memoizable = rememberedMatch.getKey().isMemoizable();
+				stars.addAll(rememberedMatch.getValue());
+			}
+		}
+
+		// Recall the match of this message in their topic.
+		String matchKey = null;
+		if (!foundMatch && this.matchCache != null) {
+			matchKey = topic + ":" + message;
+			rememberedMatch = this.matchCache.get(matchKey);
+			if (rememberedMatch != null && rememberedMatch.getKey() != null) {
+				logger.debug("Found a remembered match for {}", message);
+				matched = rememberedMatch.getKey().getPointer();
+				foundMatch = true;
+				matchedTrigger = rememberedMatch.getKey().getTrigger();
+				memoizable = rememberedMatch.getKey().isMemoizable();
+				stars.addAll(rememberedMatch.getValue());
+			}
+		}
+
 		// Search their topic for a match to their trigger.
-		if (!foundMatch) {
+		if (!foundMatch && rememberedMatch == null) {
 			logger.debug("Searching their topic for a match...");
-			for (SortedTriggerEntry trigger : this.sorted.getTopic(topic)) {
+			List<SortedTriggerEntry> triggers = this.sorted.getTopic(topic);
+			SortedTriggerEntry matchedEntry = null;
+			for (SortedTriggerEntry trigger : triggers) {
+				checkDeadline(context);
 				String pattern = trigger.getTrigger();
-				String regexp = triggerRegexp(username, pattern);
+
+				// Skip the trigger if the message lacks a word it requires.
+				if (!tokens.containsAll(trigger.getWordIds())) {
+					continue;
+				}
+				Pattern re = trigger.getPattern();
+				String regexp = re != null ? re.pattern() : triggerRegexp(username, pattern, message);
 				logger.debug("Try to match \"{}\" against {} ({})", message, pattern, regexp);
 
 				// If the trigger is atomic, we don't need to bother with the regexp engine.
@@ -1532,9 +2295,11 @@ public class RiveScript {
 					isMatch = true;
 				} else {
 					// Non-atomic triggers always need the regexp.
-					Pattern re = Pattern.compile("^" + regexp + "$");
-					Matcher matcher = re.matcher(message);
-					if (matcher.find()) {
+					if (re == null) {
+						re = Pattern.compile("^" + regexp + "$");
+					}
+					Matcher matcher = matchTrigger(re, message, pattern);
+					if (matcher != null) {
 						// The regexp matched!
 						isMatch = true;
 
@@ -1553,14 +2318,32 @@ public class RiveScript {
 					matched = trigger.getPointer();
 					foundMatch = true;
 					matchedTrigger = pattern;
+					memoizable = trigger.isMemoizable();
+					matchedEntry = trigger;
 					break;
 				}
 			}
+
+			// Remember the match, or the lack of one, if none of the triggers tried depends on the user.
+			SortedTriggerEntry last = matchedEntry;
+			if (last == null && !triggers.isEmpty()) {
+				last = triggers.get(triggers.size() - 1);
+			}
+			if (matchKey != null && (last == null || last.isDeterministic())) {
+				List<String> rememberedStars = new ArrayList<>(stars);
+				this.matchCache.put(matchKey, new AbstractMap.SimpleImmutableEntry<SortedTriggerEntry, List<String>>(matchedEntry,
+						rememberedStars));
+			}
 		}
 
 		// Store what trigger they matched on.
 		this.sessions.setLastMatch(username, matchedTrigger);
 
+		// Release the coalesced requests early if the reply is not pure, they have to compute their own.
+		if (flight != null && !memoizable) {
+			flight.complete(null);
+		}
+
 		// Did we match?
 		if (foundMatch) {
 			for (int n = 0; n < 1; n++) { // A single loop so we can break out early.
@@ -1568,10 +2351,25 @@ public class RiveScript {
 				if (matched.getRedirect() != null && matched.getRedirect().length() > 0) {
 					logger.debug("Redirecting us to {}", matched.getRedirect());
 					String redirect = matched.getRedirect();
-					redirect = processTags(username, message, redirect, stars, thatStars, 0);
+
+					// Following the same static redirect twice without processing any tags in between would loop forever.
+					if (isStaticRedirect(redirect)) {
+						if (!context.visitRedirect(topic + ":" + redirect.toLowerCase())) {
+							String errorMessage = "Redirect loop in topic " + topic + " at: " + redirect;
+							logger.warn(errorMessage);
+							if (this.throwExceptions) {
+								throw new DeepRecursionException(errorMessage);
+							}
+							reply = this.errorMessages.get(DEEP_RECURSION_KEY);
+							break;
+						}
+					} else {
+						context.clearRedirects();
+					}
+					redirect = processTags(context, message, redirect, stars, thatStars, 0);
 					redirect = redirect.toLowerCase();
 					logger.debug("Pretend user said: {}", redirect);
-					reply = getReply(username, redirect, isBegin, step + 1);
+					reply = getReply(context, redirect, isBegin, step + 1);
 					break;
 				}
 
@@ -1587,8 +2385,8 @@ public class RiveScript {
 							String potentialReply = halves[1].trim();
 
 							// Process tags all around.
-							left = processTags(username, message, left, stars, thatStars, step);
-							right = processTags(username, message, right, stars, thatStars, step);
+							left = processTags(context, message, left, stars, thatStars, step);
+							right = processTags(context, message, right, stars, thatStars, step);
 
 							// Defaults?
 							if (left.length() == 0) {
@@ -1722,7 +2520,18 @@ public class RiveScript {
 				reply = reply.replace(matcher.group(0), "");
 			}
 		} else {
-			reply = processTags(username, message, reply, stars, thatStars, 0);
+			reply = processTags(context, message, reply, stars, thatStars, 0);
+		}
+
+		// Remember pure replies, and share them with the coalesced requests.
+		if (cacheKey != null && memoizable) {
+			Map.Entry<String, String> pure = new AbstractMap.SimpleImmutableEntry<>(matchedTrigger, reply);
+			if (this.replyCache != null) {
+				this.replyCache.put(cacheKey, pure);
+			}
+			if (flight != null) {
+				flight.complete(pure);
+			}
 		}
 
 		return reply;
@@ -1769,15 +2578,19 @@ public class RiveScript {
 	/**
 	 * Processes tags in a reply element.
 	 *
-	 * @param username the username
-	 * @param message  the user's message
-	 * @param reply    the reply
-	 * @param st       the stars
-	 * @param bst      the bot stars
-	 * @param step     the recursion depth counter
+	 * @param context the reply context
+	 * @param message the user's message
+	 * @param reply   the reply
+	 * @param st      the stars
+	 * @param bst     the bot stars
+	 * @param step    the recursion depth counter
 	 * @return the processed reply
 	 */
-	private String processTags(String username, String message, String reply, List<String> st, List<String> bst, int step) {
+	private String processTags(ReplyContext context, String message, String reply, List<String> st, List<String> bst, int step) {
+		String username = context.getUsername();
+		context.setStars(st, bst);
+		checkDeadline(context);
+
 		// Prepare the stars and botstars.
 		List<String> stars = new ArrayList<>();
 		stars.add("");
@@ -2061,10 +2874,17 @@ public class RiveScript {
 				break;
 			}
 
+			checkDeadline(context);
 			String target = matcher.group(1);
 			logger.debug("Inline redirection to: {}", target);
-			String subreply = getReply(username, target.trim(), false, step + 1);
+			context.clearRedirects();
+			int depth = context.getDepth();
+			String subreply = getReply(context, target.trim(), false, step + 1);
 			reply = reply.replace(matcher.group(0), subreply);
+
+			// Restore the context of this reply element after the redirection.
+			context.setStars(st, bst);
+			context.setDepth(depth);
 		}
 
 		// Object caller.
@@ -2077,6 +2897,7 @@ public class RiveScript {
 			if (checkDeepRecursion(giveup, "Infinite loop looking for call tag!")) {
 				break;
 			}
+			checkDeadline(context);
 
 			String text = matcher.group(1).trim();
 			String[] parts = text.split(" ", 2);
@@ -2092,16 +2913,17 @@ public class RiveScript {
 			String output;
 			if (this.subroutines.containsKey(obj)) {
 				// It exists as a native Java macro.
-				output = this.subroutines.get(obj).call(this, args);
+				output = callSubroutine(context, this.subroutines.get(obj), args);
 			} else if (this.objectLanguages.containsKey(obj)) {
 				String language = this.objectLanguages.get(obj);
-				output = this.handlers.get(language).call(this, obj, args);
+				output = callObject(context, this.handlers.get(language), obj, args);
 			} else {
 				output = this.errorMessages.get(OBJECT_NOT_FOUND_KEY);
 			}
 			if (output == null) {
 				output = "";
 			}
+			checkDeadline(context);
 
 			reply = reply.replace(matcher.group(0), output);
 		}
@@ -2109,6 +2931,59 @@ public class RiveScript {
 		return reply;
 	}
 
+	/**
+	 * Invokes a Java object macro, passing the reply context to a {@link ContextualSubroutine}.
+	 * Other subroutines can obtain the user's ID with {@link #currentUser()} during the call.
+	 *
+	 * @param context    the reply context
+	 * @param subroutine the subroutine
+	 * @param args       the argument list from the call tag
+	 * @return the result
+	 */
+	private String callSubroutine(ReplyContext context, Subroutine subroutine, String[] args) {
+		if (subroutine instanceof ContextualSubroutine) {
+			return ((ContextualSubroutine) subroutine).call(this, context, args);
+		}
+		String previousUser = this.currentUser.get();
+		this.currentUser.set(context.getUsername());
+		try {
+			return subroutine.call(this, args);
+		} finally {
+			restoreCurrentUser(previousUser);
+		}
+	}
+
+	/**
+	 * Invokes an object macro through its language handler, passing the reply context to a {@link ContextualObjectHandler}.
+	 * Other handlers can obtain the user's ID with {@link #currentUser()} during the call.
+	 *
+	 * @param context the reply context
+	 * @param handler the object language handler
+	 * @param name    the name of the object
+	 * @param args    the argument list from the call tag
+	 * @return the result
+	 */
+	private String callObject(ReplyContext context, ObjectHandler handler, String name, String[] args) {
+		if (handler instanceof ContextualObjectHandler) {
+			return ((ContextualObjectHandler) handler).call(this, context, name, args);
+		}
+		String previousUser = this.currentUser.get();
+		this.currentUser.set(context.getUsername());
+		try {
+			return handler.call(this, name, args);
+		} finally {
+			restoreCurrentUser(previousUser);
+		}
+	}
+
+	private void restoreCurrentUser(String previousUser) {
+		if (previousUser != null) {
+			this.currentUser.set(previousUser);
+		} else {
+			this.currentUser.remove();
+		}
+	}
+
 	/**
 	 * Converts an args {@link String} into a array of arguments.
 	 *
@@ -2235,9 +3110,10 @@ public class RiveScript {
 	 *
 	 * @param username the username
 	 * @param pattern  the pattern
+	 * @param input    the input the regexp will be matched against, used to narrow down indexed arrays, or {@code null}
 	 * @return the regular expression trigger pattern
 	 */
-	private String triggerRegexp(String username, String pattern) {
+	private String triggerRegexp(String username, String pattern, String input) {
 		// If the trigger is simply '*' then the * needs to become (.*?) to match the blank string too.
 		pattern = RE_ZERO_WITH_STAR.matcher(pattern).replaceAll("<zerowidthstar>");
 
@@ -2251,6 +3127,7 @@ public class RiveScript {
 		pattern = pattern.replaceAll("\\|{2,}", "|");                  // Remove empty entities
 		pattern = pattern.replaceAll("(\\(|\\[)\\|", "$1");            // Remove empty entities from start of alt/opts
 		pattern = pattern.replaceAll("\\|(\\)|\\])", "$1");            // Remove empty entities from end of alt/opts
+		pattern = factorAlternations(pattern);                       // Factor (hello|help|hi) into (h(?:el(?:lo|p)|i))
 
 		// UTF-8 mode special characters.
 		if (this.utf8) {
@@ -2269,8 +3146,13 @@ public class RiveScript {
 
 			String[] parts = matcher.group(1).split("\\|");
 			List<String> opts = new ArrayList<>();
-			for (String p : parts) {
-				opts.add("(?:\\s|\\b)+" + p + "(?:\\s|\\b)+");
+			if (Alternations.isPlain(Arrays.asList(parts))) {
+				// Only the whitespace around plain words can vary, so the words can share it and be factored.
+				opts.add("(?:\\s|\\b)+(?:" + Alternations.factor(Arrays.asList(parts)) + ")(?:\\s|\\b)+");
+			} else {
+				for (String p : parts) {
+					opts.add("(?:\\s|\\b)+" + p + "(?:\\s|\\b)+");
+				}
 			}
 
 			// If this optional had a star or anything in it, make it non-matching.
@@ -2303,7 +3185,19 @@ public class RiveScript {
 
 			String name = matcher.group(1);
 			String rep = "";
-			if (this.array.containsKey(name)) {
+			StringTrie index = input != null ? this.arrayIndex.get(name) : null;
+			if (index != null) {
+				// Only expand the entries occurring in the input, in their original order; the others can never match.
+				List<String> values = this.array.get(name);
+				BitSet found = index.find(input);
+				List<String> candidates = new ArrayList<>();
+				for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+					candidates.add(values.get(i));
+				}
+				rep = candidates.isEmpty() ? "(?!)" : "(?:" + Alternations.factor(candidates) + ")";
+			} else if (this.arrayRegexps.containsKey(name)) {
+				rep = this.arrayRegexps.get(name);
+			} else if (this.array.containsKey(name)) {
 				rep = "(?:" + StringUtils.join(this.array.get(name).toArray(new String[0]), "|") + ")";
 			}
 			pattern = pattern.replace(matcher.group(0), rep);
@@ -2377,6 +3271,29 @@ public class RiveScript {
 		return pattern;
 	}
 
+	/**
+	 * Factors the common prefixes of the plain text alternations in a trigger. Alternations inside optionals are left to the optionals.
+	 *
+	 * @param pattern the pattern
+	 * @return the pattern with the alternations factored
+	 */
+	private String factorAlternations(String pattern) {
+		Matcher matcher = RE_ALTERNATION.matcher(pattern);
+		StringBuffer sb = new StringBuffer();
+		while (matcher.find()) {
+			List<String> parts = Arrays.asList(matcher.group(1).split("\\|", -1));
+			String before = pattern.substring(0, matcher.start());
+			boolean inOptional = before.lastIndexOf('[') > before.lastIndexOf(']');
+			if (parts.size() > 1 && !inOptional && Alternations.isPlain(parts)) {
+				matcher.appendReplacement(sb, Matcher.quoteReplacement("(" + Alternations.factor(parts) + ")"));
+			} else {
+				matcher.appendReplacement(sb, Matcher.quoteReplacement(matcher.group(0)));
+			}
+		}
+		matcher.appendTail(sb);
+		return sb.toString();
+	}
+
 	/**
 	 * Returns whether a trigger is atomic or not.
 	 *
@@ -2498,8 +3415,9 @@ public class RiveScript {
 	 * Returns the current user's ID.
 	 * <p>
 	 * This is only useful from within a (Java) object macro, to get the ID of the user who invoked the macro.
-	 * This value is set at the beginning of {@link #reply(String, String)} and unset at the end, so this method will return {@code null}
-	 * outside of a reply context.
+	 * This value is only set on the calling thread while an object macro is invoked, so this method will return {@code null}
+	 * outside of an object macro. Java object macros should prefer {@link ContextualSubroutine}, which receives the user's ID
+	 * through the {@link ReplyContext} and does not depend on the thread running it.
 	 *
 	 * @return the user's ID or {@code null}
 	 */
@@ -2528,7 +3446,11 @@ public class RiveScript {
 			List<SortedTriggerEntry> data = entry.getValue();
 			System.out.println("  Topic: " + topic);
 			for (SortedTriggerEntry trigger : data) {
-				System.out.println("    + " + trigger.getTrigger());
+				if (trigger.getCost() > 0) {
+					System.out.println("    + " + trigger.getTrigger() + " (cost " + trigger.getCost() + ")");
+				} else {
+					System.out.println("    + " + trigger.getTrigger());
+				}
 			}
 		}
 	}
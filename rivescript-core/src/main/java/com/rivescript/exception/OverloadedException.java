@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.exception;
+
+import com.rivescript.RiveScriptException;
+
+/**
+ * Thrown to indicate the reply was rejected because the bot is overloaded.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class OverloadedException extends RiveScriptException {
+
+	/**
+	 * Creates a new {@code OverloadedException}.
+	 */
+	public OverloadedException() {
+		super();
+	}
+
+	/**
+	 * Creates a new {@code OverloadedException} with the given message.
+	 *
+	 * @param message the message
+	 */
+	public OverloadedException(String message) {
+		super(message);
+	}
+}
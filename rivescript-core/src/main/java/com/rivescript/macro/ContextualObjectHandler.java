@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.macro;
+
+import com.rivescript.ReplyContext;
+import com.rivescript.RiveScript;
+
+/**
+ * Interface for RiveScript object handlers which receive the {@link ReplyContext} of the reply invoking an object.
+ * <p>
+ * When invoked from a {@code <call>} tag, RiveScript calls {@link #call(RiveScript, ReplyContext, String, String[])} instead of
+ * {@link #call(RiveScript, String, String[])}, and does not set {@link RiveScript#currentUser()}.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public interface ContextualObjectHandler extends ObjectHandler {
+
+	/**
+	 * Handler for when a user invokes the object. Should return the {@link String} result from the object.
+	 *
+	 * @param rs      the reference to the parent RiveScript instance
+	 * @param context the context of the reply invoking the object
+	 * @param name    the name of the object being called
+	 * @param fields  the argument list from the call tag
+	 * @return the result
+	 */
+	String call(RiveScript rs, ReplyContext context, String name, String[] fields);
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.regexp;
+
+import com.rivescript.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Factors the common prefixes of literal alternation branches into a trie-shaped regexp.
+ * <p>
+ * For example {@code hello|help|hi} becomes {@code h(?:el(?:lo|p)|i)}, so the regexp engine compares each character of the input once
+ * instead of once per branch. The factored alternation matches the same input and prefers the same branches: only branches starting
+ * with different characters are reordered, and those can never match at the same position.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class Alternations {
+
+	private static final Pattern RE_SPECIAL = Pattern.compile("[\\\\.+*?\\[\\]^$(){}|#_@<>]");
+
+	private Alternations() {
+	}
+
+	/**
+	 * Returns whether a branch is plain text, matching exactly itself both as trigger and as regexp, without surrounding whitespace.
+	 *
+	 * @param branch the branch
+	 * @return whether the branch is plain text
+	 */
+	public static boolean isPlain(String branch) {
+		return !branch.isEmpty() && branch.equals(branch.trim()) && !RE_SPECIAL.matcher(branch).find();
+	}
+
+	/**
+	 * Returns whether all branches are plain text.
+	 *
+	 * @param branches the branches
+	 * @return whether all branches are plain text
+	 * @see #isPlain(String)
+	 */
+	public static boolean isPlain(List<String> branches) {
+		for (String branch : branches) {
+			if (!isPlain(branch)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Factors the common prefixes of plain text branches.
+	 *
+	 * @param branches the plain text branches, in order of preference
+	 * @return the factored alternation, without an enclosing group
+	 */
+	public static String factor(List<String> branches) {
+		// Duplicate branches can never match where their first occurrence did not.
+		return factorBranches(new ArrayList<>(new LinkedHashSet<>(branches)));
+	}
+
+	private static String factorBranches(List<String> branches) {
+		// An empty branch matches wherever the others could, so the branches on either side of it must not be merged.
+		List<String> pieces = new ArrayList<>();
+		List<String> segment = new ArrayList<>();
+		for (String branch : branches) {
+			if (branch.isEmpty()) {
+				if (!segment.isEmpty()) {
+					pieces.add(factorSegment(segment));
+					segment = new ArrayList<>();
+				}
+				pieces.add("");
+			} else {
+				segment.add(branch);
+			}
+		}
+		if (!segment.isEmpty()) {
+			pieces.add(factorSegment(segment));
+		}
+		return StringUtils.join(pieces.toArray(new String[0]), "|");
+	}
+
+	private static String factorSegment(List<String> segment) {
+		// Group the branches by their first character.
+		Map<Character, List<String>> groups = new LinkedHashMap<>();
+		for (String branch : segment) {
+			List<String> group = groups.get(branch.charAt(0));
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(branch.charAt(0), group);
+			}
+			group.add(branch);
+		}
+
+		List<String> pieces = new ArrayList<>();
+		for (List<String> group : groups.values()) {
+			if (group.size() == 1) {
+				pieces.add(group.get(0));
+				continue;
+			}
+			String prefix = commonPrefix(group);
+			List<String> rest = new ArrayList<>();
+			for (String branch : group) {
+				rest.add(branch.substring(prefix.length()));
+			}
+			pieces.add(prefix + "(?:" + factorBranches(rest) + ")");
+		}
+		return StringUtils.join(pieces.toArray(new String[0]), "|");
+	}
+
+	private static String commonPrefix(List<String> branches) {
+		String prefix = branches.get(0);
+		for (String branch : branches) {
+			int i = 0;
+			while (i < prefix.length() && i < branch.length() && prefix.charAt(i) == branch.charAt(i)) {
+				i++;
+			}
+			prefix = prefix.substring(0, i);
+		}
+		return prefix;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.regexp;
+
+/**
+ * {@link CharSequence} wrapper limiting the number of characters the regexp engine may examine, so a catastrophically backtracking
+ * pattern gives up instead of running for seconds.
+ * <p>
+ * {@link java.util.regex.Matcher} cannot be interrupted, but reads its input through {@link #charAt(int)}. Each read consumes one unit
+ * of the budget, and a {@link BudgetExceededException} is thrown once the budget is spent.
+ * <p>
+ * Usage:
+ * <p>
+ * <pre>
+ * <code>
+ * Matcher matcher = pattern.matcher(new BudgetedCharSequence(input, 100000));
+ * try {
+ *     matched = matcher.find();
+ * } catch (BudgetedCharSequence.BudgetExceededException e) {
+ *     matched = false;
+ * }
+ * </code>
+ * </pre>
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class BudgetedCharSequence implements CharSequence {
+
+	private final CharSequence delegate;
+	private long remaining;
+
+	/**
+	 * Creates a new {@link BudgetedCharSequence}.
+	 *
+	 * @param delegate the input
+	 * @param budget   the maximum number of characters that may be read
+	 */
+	public BudgetedCharSequence(CharSequence delegate, long budget) {
+		this.delegate = delegate;
+		this.remaining = budget;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (--remaining < 0) {
+			throw new BudgetExceededException();
+		}
+		return delegate.charAt(index);
+	}
+
+	@Override
+	public int length() {
+		return delegate.length();
+	}
+
+	/**
+	 * Returns a subsequence of the input. Subsequences are only taken to extract matched groups and are not budgeted.
+	 */
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return delegate.subSequence(start, end);
+	}
+
+	/**
+	 * Returns the remaining budget.
+	 *
+	 * @return the remaining budget
+	 */
+	public long getRemaining() {
+		return Math.max(0, remaining);
+	}
+
+	@Override
+	public String toString() {
+		return delegate.toString();
+	}
+
+	/**
+	 * Thrown when the budget of a {@link BudgetedCharSequence} is spent. Carries no stack trace, as it is thrown from deep
+	 * inside the regexp engine and only used for control flow.
+	 */
+	public static class BudgetExceededException extends RuntimeException {
+
+		BudgetExceededException() {
+			super("Regexp budget exceeded", null, false, false);
+		}
+	}
+}
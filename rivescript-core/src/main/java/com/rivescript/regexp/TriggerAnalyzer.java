@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.regexp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Inspects triggers for backtracking risk and rewrites their regexps into cheaper equivalents.
+ * <p>
+ * The analysis works on the trigger as written in the RiveScript source. Each trigger gets a cost score, a rough and relative estimate
+ * of the work the regexp engine may have to do to match it, and warnings for the constructs that make it expensive:
+ * <ul>
+ * <li>adjacent wildcards, which make the engine try every way to split the words between them,</li>
+ * <li>optionals containing wildcards, which nest a lazy quantifier inside a repeated group,</li>
+ * <li>large alternations and arrays which are not plain text, and so are tried branch by branch at every position.</li>
+ * </ul>
+ * The analysis also yields the words the trigger requires, so messages lacking one of them can be rejected without running the
+ * regexp at all.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class TriggerAnalyzer {
+
+	/**
+	 * The cost score from which a trigger is reported as expensive.
+	 */
+	public static final int EXPENSIVE_COST = 100;
+
+	/**
+	 * The number of branches from which an alternation or array is reported as large.
+	 */
+	public static final int LARGE_ALTERNATION = 100;
+
+	private static final int UNBOUNDED_WILDCARD_COST = 10;
+	private static final int BOUNDED_WILDCARD_COST = 3;
+	private static final int OPTIONAL_COST = 2;
+	private static final int WILDCARD_OPTIONAL_COST = 25;
+	private static final int ADJACENT_WILDCARDS_COST = 100;
+
+	private static final Pattern RE_ARRAY_NAME = Pattern.compile("@([A-Za-z0-9_]+)");
+	private static final Pattern RE_LAZY_BOUNDED = Pattern.compile("\\((\\\\d|\\[\\^\\\\s\\\\d\\])\\+\\?\\)(?= |$)");
+
+	private TriggerAnalyzer() {
+	}
+
+	/**
+	 * Analyzes a trigger.
+	 *
+	 * @param trigger the trigger
+	 * @param arrays  the array definitions, used to size the arrays referenced by the trigger
+	 * @return the analysis
+	 */
+	public static Analysis analyze(String trigger, Map<String, List<String>> arrays) {
+		trigger = trigger.replaceAll("\\s*\\{weight=\\d+\\}\\s*", "").trim();
+
+		int unbounded = 0;
+		int bounded = 0;
+		int optionals = 0;
+		int wildcardOptionals = 0;
+		int branches = 0;
+		int largest = 0;
+		int adjacent = 0;
+		boolean afterWildcard = false;
+		Set<String> words = new LinkedHashSet<>();
+
+		List<String> tokens = tokenize(trigger);
+		for (int i = 0; i < tokens.size(); i++) {
+			String token = tokens.get(i);
+			if (token.startsWith("[")) {
+				// Optionals may match nothing, so they don't separate wildcards.
+				optionals++;
+				if (hasWildcard(token)) {
+					wildcardOptionals++;
+				}
+				int size = countBranches(token, arrays);
+				branches += size;
+				largest = Math.max(largest, size);
+				continue;
+			}
+			if (token.startsWith("(") || token.startsWith("@")) {
+				int size = countBranches(token, arrays);
+				branches += size;
+				largest = Math.max(largest, size);
+				afterWildcard = false;
+			} else if (token.contains("*")) {
+				unbounded++;
+				if (afterWildcard) {
+					adjacent++;
+				}
+				afterWildcard = true;
+			} else if (token.equals("#") || token.equals("_")) {
+				bounded++;
+				afterWildcard = false;
+			} else {
+				// A literal word between spaces (and not optionals, which swallow the spaces around them) is a whole word of the message.
+				boolean spaced = (i == 0 || !tokens.get(i - 1).startsWith("["))
+						&& (i == tokens.size() - 1 || !tokens.get(i + 1).startsWith("["));
+				if (isLiteral(token) && spaced) {
+					words.add(token);
+				}
+				afterWildcard = false;
+			}
+		}
+
+		int cost = 1
+				+ unbounded * UNBOUNDED_WILDCARD_COST
+				+ bounded * BOUNDED_WILDCARD_COST
+				+ optionals * OPTIONAL_COST
+				+ wildcardOptionals * WILDCARD_OPTIONAL_COST
+				+ adjacent * ADJACENT_WILDCARDS_COST
+				+ branches;
+
+		List<String> warnings = new ArrayList<>();
+		if (adjacent > 0) {
+			warnings.add("adjacent wildcards make the regexp try every way to split the words between them");
+		}
+		if (wildcardOptionals > 0) {
+			warnings.add("wildcards inside optionals nest a lazy quantifier inside a repeated group");
+		}
+		if (largest >= LARGE_ALTERNATION) {
+			warnings.add("an alternation or array of " + largest + " branches is tried branch by branch at every position");
+		}
+		if (cost >= EXPENSIVE_COST) {
+			warnings.add("the trigger is expensive to match (cost " + cost + ")");
+		}
+		return new Analysis(cost, new ArrayList<>(words), warnings);
+	}
+
+	/**
+	 * Rewrites a trigger's regexp into a cheaper equivalent.
+	 * <p>
+	 * The rewrites only apply where they provably match the same input with the same groups:
+	 * <ul>
+	 * <li>the whitespace around optionals, {@code (?:\s|\b)+}, loses its repeated zero-width branch,</li>
+	 * <li>{@code #} and {@code _} wildcards followed by a space or the end of the trigger become possessive, since they cannot
+	 * match a space and so have only one possible length.</li>
+	 * </ul>
+	 *
+	 * @param regexp the trigger's regexp, without anchors
+	 * @return the rewritten regexp
+	 */
+	public static String optimize(String regexp) {
+		regexp = regexp.replace("(?:\\s|\\b)+", "(?:\\s+|\\b)");
+		regexp = RE_LAZY_BOUNDED.matcher(regexp).replaceAll("($1++)");
+		return regexp;
+	}
+
+	/**
+	 * Splits a trigger on the whitespace outside of optionals, alternations and tags.
+	 */
+	private static List<String> tokenize(String trigger) {
+		List<String> tokens = new ArrayList<>();
+		StringBuilder token = new StringBuilder();
+		int depth = 0;
+		for (int i = 0; i < trigger.length(); i++) {
+			char c = trigger.charAt(i);
+			if (c == '(' || c == '[' || c == '<') {
+				depth++;
+			} else if ((c == ')' || c == ']' || c == '>') && depth > 0) {
+				depth--;
+			}
+			if (depth == 0 && Character.isWhitespace(c)) {
+				if (token.length() > 0) {
+					tokens.add(token.toString());
+					token.setLength(0);
+				}
+			} else {
+				token.append(c);
+			}
+		}
+		if (token.length() > 0) {
+			tokens.add(token.toString());
+		}
+		return tokens;
+	}
+
+	/**
+	 * Counts the branches of an optional, alternation or array the regexp engine tries one by one, expanding the arrays it references.
+	 * Plain text alternations and arrays are factored into a trie, and count as one.
+	 */
+	private static int countBranches(String token, Map<String, List<String>> arrays) {
+		String body = token.startsWith("[") || token.startsWith("(") ? token.substring(1, token.length() - 1) : token;
+		String[] branches = body.split("\\|");
+		if (Alternations.isPlain(Arrays.asList(branches))) {
+			return 1;
+		}
+		int count = 0;
+		for (String branch : branches) {
+			Matcher matcher = RE_ARRAY_NAME.matcher(branch);
+			List<String> array = matcher.find() ? arrays.get(matcher.group(1)) : null;
+			if (array != null && !Alternations.isPlain(array)) {
+				count += array.size();
+			} else {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static boolean hasWildcard(String token) {
+		return token.contains("*") || token.contains("#") || token.contains("_");
+	}
+
+	private static boolean isLiteral(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			if (!Character.isLetterOrDigit(token.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The result of analyzing a trigger.
+	 */
+	public static final class Analysis {
+
+		private final int cost;
+		private final List<String> words;
+		private final List<String> warnings;
+
+		private Analysis(int cost, List<String> words, List<String> warnings) {
+			this.cost = cost;
+			this.words = Collections.unmodifiableList(words);
+			this.warnings = Collections.unmodifiableList(warnings);
+		}
+
+		/**
+		 * Returns the cost score of the trigger.
+		 *
+		 * @return the cost score
+		 */
+		public int getCost() {
+			return cost;
+		}
+
+		/**
+		 * Returns the whole words every matching message contains.
+		 *
+		 * @return the words
+		 */
+		public List<String> getWords() {
+			return words;
+		}
+
+		/**
+		 * Returns the warnings about the constructs making the trigger expensive.
+		 *
+		 * @return the warnings
+		 */
+		public List<String> getWarnings() {
+			return warnings;
+		}
+	}
+}
@@ -22,8 +22,9 @@
 
 package com.rivescript.session;
 
-
-import java.util.Collections;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -37,7 +38,7 @@ import static com.rivescript.session.ThawAction.THAW;
  * @author Noah Petherbridge
  * @author Marcel Overdijk
  */
-public class ConcurrentHashMapSessionManager implements SessionManager {
+public class ConcurrentHashMapSessionManager implements SessionManager, CursorSessionManager, ExportableSessionManager {
 
 	private ConcurrentHashMap<String, UserData> users;
 	private ConcurrentHashMap<String, UserData> frozen;
@@ -72,10 +73,7 @@ public class ConcurrentHashMapSessionManager implements SessionManager {
 	@Override
 	public void addHistory(String username, String input, String reply) {
 		UserData userData = init(username);
-		Collections.rotate(userData.getHistory().getInput(), 1); // Rotate right.
-		userData.getHistory().getInput().set(0, input.trim());   // Now set the first item
-		Collections.rotate(userData.getHistory().getReply(), 1); // Rotate right.
-		userData.getHistory().getReply().set(0, reply.trim());   // Now set the first item
+		userData.getHistory().add(input.trim(), reply.trim());
 	}
 
 	@Override
@@ -105,6 +103,11 @@ public class ConcurrentHashMapSessionManager implements SessionManager {
 		return users;
 	}
 
+	@Override
+	public SessionCursor openCursor(int batchSize) {
+		return new IteratorSessionCursor(users.entrySet().iterator(), batchSize);
+	}
+
 	@Override
 	public String getLastMatch(String username) {
 		if (!users.containsKey(username)) {
@@ -156,26 +159,36 @@ public class ConcurrentHashMapSessionManager implements SessionManager {
 		}
 	}
 
+	@Override
+	public void exportSessions(OutputStream out) throws IOException {
+		SessionCodec.Encoder encoder = new SessionCodec.Encoder(out);
+		for (Map.Entry<String, UserData> entry : users.entrySet()) {
+			encoder.write(entry.getKey(), entry.getValue());
+		}
+		encoder.finish();
+	}
+
+	@Override
+	public void importSessions(InputStream in) throws IOException {
+		SessionCodec.Decoder decoder = new SessionCodec.Decoder(in);
+		Map.Entry<String, UserData> entry;
+		while ((entry = decoder.read()) != null) {
+			users.put(entry.getKey(), entry.getValue());
+		}
+	}
+
 	/**
 	 * Makes a safe clone of {@link UserData}.
+	 * <p>
+	 * The clone shares the variables and history with the original until either of them is modified, so this is a constant time
+	 * operation.
 	 *
 	 * @param data the data to clone
 	 * @return the cloned data
 	 */
 	private UserData cloneUser(UserData data) {
-		UserData clone = defaultSession();
-
-		// Copy user variables.
-		for (Map.Entry<String, String> entry : data.getVariables().entrySet()) {
-			clone.setVariable(entry.getKey(), entry.getValue());
-		}
-
-		// Copy history.
-		for (int i = 0; i < HISTORY_SIZE; i++) {
-			clone.getHistory().getInput().set(i, data.getHistory().getInput(i));
-			clone.getHistory().getReply().set(i, data.getHistory().getReply(i));
-		}
-
+		UserData clone = data.copy();
+		clone.setLastMatch("");
 		return clone;
 	}
 
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.rivescript.session;
+
+/**
+ * Optional interface for {@link SessionManager}s which can walk all their sessions in batches.
+ * <p>
+ * Use {@link SessionCursors#open(SessionManager, int)} to walk the sessions of any session manager; it falls back to
+ * {@link SessionManager#getAll()} for session managers not implementing this interface.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public interface CursorSessionManager {
+
+	/**
+	 * Opens a weakly consistent cursor over all users, returning their user data in batches.
+	 * <p>
+	 * Unlike {@link SessionManager#getAll()} this does not require all sessions to be held in memory at once, and does not block
+	 * concurrent replies.
+	 *
+	 * @param batchSize the maximum number of sessions per batch
+	 * @return the cursor
+	 * @see SessionCursor
+	 */
+	SessionCursor openCursor(int batchSize);
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.rivescript.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Optional interface for {@link SessionManager}s which can export and import their sessions as a stream.
+ * <p>
+ * Use {@link SessionCodec#exportSessions(SessionManager, OutputStream)} and {@link SessionCodec#importSessions(SessionManager, InputStream)}
+ * to export and import the sessions of any session manager; they fall back to {@link SessionManager#getAll()} and the public
+ * {@link SessionManager} API for session managers not implementing this interface.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public interface ExportableSessionManager {
+
+	/**
+	 * Exports all sessions to a stream, using the {@link SessionCodec} format.
+	 * <p>
+	 * Sessions are written one at a time, so this does not require all sessions to be held in memory at once.
+	 * The stream is not closed.
+	 *
+	 * @param out the output stream
+	 * @throws IOException in case of an I/O error
+	 */
+	void exportSessions(OutputStream out) throws IOException;
+
+	/**
+	 * Imports sessions from a stream written by {@link #exportSessions(OutputStream)}.
+	 * <p>
+	 * Sessions are read one at a time and replace any existing session of the same user. The stream is not closed.
+	 *
+	 * @param in the input stream
+	 * @throws IOException in case of an I/O error or an invalid stream
+	 */
+	void importSessions(InputStream in) throws IOException;
+}
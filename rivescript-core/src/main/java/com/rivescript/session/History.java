@@ -24,6 +24,7 @@ package com.rivescript.session;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static com.rivescript.RiveScript.UNDEFINED;
@@ -31,6 +32,9 @@ import static com.rivescript.session.SessionManager.HISTORY_SIZE;
 
 /**
  * Container to keep track of recent input and reply history.
+ * <p>
+ * Copies made with {@link #copy()} share their lists with the original until either of them is modified (copy-on-write).
+ * Copying and modifying are synchronized on the instance, and private copies are published through volatile fields.
  *
  * @author Noah Petherbridge
  * @author Marcel Overdijk
@@ -39,8 +43,9 @@ public class History implements Serializable {
 
 	private static final long serialVersionUID = 3383496053211557826L;
 
-	private List<String> input;
-	private List<String> reply;
+	private volatile List<String> input;
+	private volatile List<String> reply;
+	private transient boolean shared; // guarded by this
 
 	public History() {
 		this.input = new ArrayList<>(HISTORY_SIZE);
@@ -51,22 +56,96 @@ public class History implements Serializable {
 		}
 	}
 
+	private History(List<String> input, List<String> reply) {
+		this.input = input;
+		this.reply = reply;
+	}
+
+	/**
+	 * Returns a read-only view of the input history, the most recent input first.
+	 *
+	 * @return the input history
+	 */
 	public List<String> getInput() {
-		return input;
+		return Collections.unmodifiableList(input);
 	}
 
 	public String getInput(int index) {
 		return input.get(index);
 	}
 
+	/**
+	 * Returns a read-only view of the reply history, the most recent reply first.
+	 *
+	 * @return the reply history
+	 */
 	public List<String> getReply() {
-		return reply;
+		return Collections.unmodifiableList(reply);
 	}
 
 	public String getReply(int index) {
 		return reply.get(index);
 	}
 
+	/**
+	 * Adds an input and reply as the most recent entry, dropping the oldest entry.
+	 *
+	 * @param input the input
+	 * @param reply the reply
+	 */
+	public synchronized void add(String input, String reply) {
+		List<String> inputs = owned(this.input);
+		List<String> replies = owned(this.reply);
+		Collections.rotate(inputs, 1);  // Rotate right.
+		inputs.set(0, input);           // Now set the first item
+		Collections.rotate(replies, 1); // Rotate right.
+		replies.set(0, reply);          // Now set the first item
+		publish(inputs, replies);
+	}
+
+	/**
+	 * Replaces an entry of the history.
+	 *
+	 * @param index the index of the entry, {@code 0} being the most recent one
+	 * @param input the input
+	 * @param reply the reply
+	 */
+	public synchronized void set(int index, String input, String reply) {
+		List<String> inputs = owned(this.input);
+		List<String> replies = owned(this.reply);
+		inputs.set(index, input);
+		replies.set(index, reply);
+		publish(inputs, replies);
+	}
+
+	/**
+	 * Returns a copy of this history, sharing the lists with this history until either of them is modified.
+	 *
+	 * @return the copy
+	 */
+	public synchronized History copy() {
+		History copy = new History(input, reply);
+		shared = true;
+		copy.shared = true;
+		return copy;
+	}
+
+	/**
+	 * Returns the list to modify: a private copy if the lists are still shared with another copy, the list itself otherwise.
+	 */
+	private List<String> owned(List<String> list) {
+		return shared ? new ArrayList<>(list) : list;
+	}
+
+	/**
+	 * Publishes the modified lists, which are no longer shared.
+	 */
+	private void publish(List<String> inputs, List<String> replies) {
+		this.input = inputs;
+		this.reply = replies;
+		shared = false;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
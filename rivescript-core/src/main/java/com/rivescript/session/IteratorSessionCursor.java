@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * {@link SessionCursor} backed by a (weakly consistent) {@link Iterator}.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+class IteratorSessionCursor implements SessionCursor {
+
+	private final Iterator<Map.Entry<String, UserData>> iterator;
+	private final int batchSize;
+
+	IteratorSessionCursor(Iterator<Map.Entry<String, UserData>> iterator, int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("'batchSize' must be greater than 0");
+		}
+		this.iterator = iterator;
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return iterator.hasNext();
+	}
+
+	@Override
+	public Map<String, UserData> next() {
+		if (!iterator.hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Map<String, UserData> batch = new LinkedHashMap<>();
+		while (iterator.hasNext() && batch.size() < batchSize) {
+			Map.Entry<String, UserData> entry = iterator.next();
+			batch.put(entry.getKey(), entry.getValue());
+		}
+		return batch;
+	}
+
+	@Override
+	public void close() {
+	}
+}
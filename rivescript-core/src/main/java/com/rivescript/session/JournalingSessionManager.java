@@ -0,0 +1,679 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import com.rivescript.RiveScriptException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+import static com.rivescript.session.SessionManager.HISTORY_SIZE;
+import static com.rivescript.session.ThawAction.DISCARD;
+
+/**
+ * A {@link SessionManager} that keeps user data in memory and persists every change to a local append-only journal,
+ * so sessions survive restarts without an external database.
+ * <p>
+ * Changes are buffered and written to the journal by a background thread in batches (group commit), followed by a single
+ * {@link FileChannel#force(boolean)} per batch. This means a crash can lose at most the changes of the last commit interval.
+ * Call {@link #flush()} to force a synchronous commit.
+ * <p>
+ * When the journal grows beyond the compaction threshold, the complete state is written to a snapshot file and the journal is
+ * truncated. The sessions are only locked while taking copy-on-write copies of the users, the snapshot itself is written outside
+ * the lock. On startup the snapshot is loaded and the journal tail is replayed on top of it. Torn records at the end of
+ * the journal (e.g. after a crash during a write) are detected by their checksum and discarded.
+ * <p>
+ * Frozen user variables (see {@link #freeze(String)}) are kept in memory only.
+ * Note that changes made directly to a {@link UserData} instance returned by this session manager are not journaled.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class JournalingSessionManager implements SessionManager, CursorSessionManager, ExportableSessionManager, Closeable {
+
+	/**
+	 * The default commit interval in milliseconds.
+	 */
+	public static final long DEFAULT_COMMIT_INTERVAL = 100;
+
+	/**
+	 * The default journal size in bytes after which the journal is compacted into a snapshot.
+	 */
+	public static final long DEFAULT_COMPACT_THRESHOLD = 64 * 1024 * 1024;
+
+	static final String SNAPSHOT_FILE = "sessions.snapshot";
+	static final String JOURNAL_FILE = "sessions.journal";
+
+	private static final int SNAPSHOT_MAGIC = 0x52535353; // "RSSS"
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final int RECORD_HEADER_SIZE = 8;      // length + checksum
+
+	private static final byte OP_INIT = 1;
+	private static final byte OP_SET = 2;
+	private static final byte OP_HISTORY = 3;
+	private static final byte OP_LAST_MATCH = 4;
+	private static final byte OP_CLEAR = 5;
+	private static final byte OP_CLEAR_ALL = 6;
+	private static final byte OP_PUT = 7;
+
+	private static Logger logger = LoggerFactory.getLogger(JournalingSessionManager.class);
+
+	private final ConcurrentHashMapSessionManager delegate;
+	private final File snapshotFile;
+	private final File journalFile;
+	private final long compactThreshold;
+	private final ReentrantLock lock = new ReentrantLock();        // guards the sessions and the pending batch
+	private final ReentrantLock journalLock = new ReentrantLock(); // guards the journal, always taken before the lock
+	private final ScheduledExecutorService committer;
+
+	private FileChannel journal;
+	private ByteArrayOutputStream pending;
+	private long sequence;
+
+	/**
+	 * Creates a new {@link JournalingSessionManager} storing its files in the given directory, using the default commit interval and
+	 * compaction threshold.
+	 *
+	 * @param directory the directory to store the snapshot and journal files in
+	 * @throws RiveScriptException in case the sessions cannot be recovered or the journal cannot be opened
+	 */
+	public JournalingSessionManager(File directory) {
+		this(directory, DEFAULT_COMMIT_INTERVAL, DEFAULT_COMPACT_THRESHOLD);
+	}
+
+	/**
+	 * Creates a new {@link JournalingSessionManager} storing its files in the given directory.
+	 *
+	 * @param directory        the directory to store the snapshot and journal files in
+	 * @param commitInterval   the interval in milliseconds between group commits
+	 * @param compactThreshold the journal size in bytes after which the journal is compacted into a snapshot
+	 * @throws RiveScriptException in case the sessions cannot be recovered or the journal cannot be opened
+	 */
+	public JournalingSessionManager(File directory, long commitInterval, long compactThreshold) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new RiveScriptException("Directory '" + directory + "' cannot be created");
+		}
+		this.delegate = new ConcurrentHashMapSessionManager();
+		this.snapshotFile = new File(directory, SNAPSHOT_FILE);
+		this.journalFile = new File(directory, JOURNAL_FILE);
+		this.compactThreshold = compactThreshold;
+		this.pending = new ByteArrayOutputStream();
+
+		try {
+			recover();
+		} catch (IOException e) {
+			throw new RiveScriptException("Error recovering sessions from directory '" + directory + "'", e);
+		}
+
+		this.committer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "rivescript-session-journal");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.committer.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					commit();
+					if (journal.size() > JournalingSessionManager.this.compactThreshold) {
+						compact();
+					}
+				} catch (IOException e) {
+					logger.error("Error committing session journal: {}", e.getMessage(), e);
+				}
+			}
+		}, commitInterval, commitInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public UserData init(String username) {
+		lock.lock();
+		try {
+			if (delegate.get(username) == null) {
+				delegate.init(username);
+				append(newRecord(OP_INIT, username));
+			}
+		} finally {
+			lock.unlock();
+		}
+		return delegate.get(username);
+	}
+
+	@Override
+	public void set(String username, String name, String value) {
+		Map<String, String> vars = new HashMap<>();
+		vars.put(name, value);
+		set(username, vars);
+	}
+
+	@Override
+	public void set(String username, Map<String, String> vars) {
+		lock.lock();
+		try {
+			delegate.set(username, vars);
+			Record record = newRecord(OP_SET, username);
+			record.writeInt(vars.size());
+			for (Map.Entry<String, String> var : vars.entrySet()) {
+				record.writeString(var.getKey());
+				record.writeString(var.getValue());
+			}
+			append(record);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void addHistory(String username, String input, String reply) {
+		lock.lock();
+		try {
+			delegate.addHistory(username, input, reply);
+			Record record = newRecord(OP_HISTORY, username);
+			record.writeString(input);
+			record.writeString(reply);
+			append(record);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void setLastMatch(String username, String trigger) {
+		lock.lock();
+		try {
+			delegate.setLastMatch(username, trigger);
+			Record record = newRecord(OP_LAST_MATCH, username);
+			record.writeString(trigger);
+			append(record);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String get(String username, String name) {
+		return delegate.get(username, name);
+	}
+
+	@Override
+	public UserData get(String username) {
+		return delegate.get(username);
+	}
+
+	@Override
+	public Map<String, UserData> getAll() {
+		return delegate.getAll();
+	}
+
+	@Override
+	public SessionCursor openCursor(int batchSize) {
+		return delegate.openCursor(batchSize);
+	}
+
+	@Override
+	public String getLastMatch(String username) {
+		return delegate.getLastMatch(username);
+	}
+
+	@Override
+	public History getHistory(String username) {
+		return delegate.getHistory(username);
+	}
+
+	@Override
+	public void clear(String username) {
+		lock.lock();
+		try {
+			delegate.clear(username);
+			append(newRecord(OP_CLEAR, username));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clearAll() {
+		lock.lock();
+		try {
+			delegate.clearAll();
+			append(newRecord(OP_CLEAR_ALL, ""));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void freeze(String username) {
+		delegate.freeze(username);
+	}
+
+	@Override
+	public void thaw(String username, ThawAction action) {
+		lock.lock();
+		try {
+			delegate.thaw(username, action);
+			UserData data = delegate.get(username);
+			if (action != DISCARD && data != null) {
+				// Journal the restored state as a whole, as the frozen copy itself is not persisted.
+				Record record = newRecord(OP_PUT, username);
+				writeUserData(record, data);
+				append(record);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void exportSessions(OutputStream out) throws IOException {
+		delegate.exportSessions(out);
+	}
+
+	@Override
+	public void importSessions(InputStream in) throws IOException {
+		SessionCodec.Decoder decoder = new SessionCodec.Decoder(in);
+		Map.Entry<String, UserData> entry;
+		while ((entry = decoder.read()) != null) {
+			lock.lock();
+			try {
+				SessionCodec.restore(delegate, entry.getKey(), entry.getValue());
+				Record record = newRecord(OP_PUT, entry.getKey());
+				writeUserData(record, entry.getValue());
+				append(record);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Writes all pending changes to the journal and forces them to disk.
+	 *
+	 * @throws RiveScriptException in case of an I/O error
+	 */
+	public void flush() {
+		try {
+			commit();
+		} catch (IOException e) {
+			throw new RiveScriptException("Error committing session journal '" + journalFile + "'", e);
+		}
+	}
+
+	/**
+	 * Compacts the journal into a new snapshot and truncates the journal.
+	 * <p>
+	 * This is done automatically by the background committer when the journal exceeds the compaction threshold.
+	 * Changes made while the snapshot is written are kept in the pending batch, and committed to the truncated journal afterwards.
+	 *
+	 * @throws IOException in case of an I/O error
+	 */
+	public void compact() throws IOException {
+		// Holding the journal lock keeps the journal to the records committed here, which are all covered by the snapshot.
+		journalLock.lock();
+		try {
+			commit();
+			long snapshotSequence;
+			Map<String, UserData> users = new HashMap<>();
+			lock.lock();
+			try {
+				snapshotSequence = sequence;
+				for (Map.Entry<String, UserData> entry : delegate.getAll().entrySet()) {
+					users.put(entry.getKey(), entry.getValue().copy());
+				}
+			} finally {
+				lock.unlock();
+			}
+			writeSnapshot(snapshotSequence, users);
+			journal.truncate(0);
+			journal.force(true);
+		} finally {
+			journalLock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the background committer, commits all pending changes and closes the journal.
+	 *
+	 * @throws IOException in case of an I/O error
+	 */
+	@Override
+	public void close() throws IOException {
+		committer.shutdown();
+		try {
+			committer.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		journalLock.lock();
+		try {
+			lock.lock();
+			try {
+				commit();
+				journal.close();
+			} finally {
+				lock.unlock();
+			}
+		} finally {
+			journalLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the pending records to the journal and forces them to disk.
+	 *
+	 * @throws IOException in case of an I/O error
+	 */
+	private void commit() throws IOException {
+		// Hold the journal lock from taking the batch until it is written, so concurrent commits write their batches in order.
+		journalLock.lock();
+		try {
+			ByteArrayOutputStream batch;
+			lock.lock();
+			try {
+				if (pending.size() == 0) {
+					return;
+				}
+				batch = pending;
+				pending = new ByteArrayOutputStream(batch.size());
+			} finally {
+				lock.unlock();
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+			while (buffer.hasRemaining()) {
+				journal.write(buffer);
+			}
+			journal.force(false);
+		} finally {
+			journalLock.unlock();
+		}
+	}
+
+	/**
+	 * Creates a new journal record. Must be called while holding the lock.
+	 */
+	private Record newRecord(byte op, String username) {
+		Record record = new Record();
+		record.writeLong(++sequence);
+		record.writeByte(op);
+		record.writeString(username);
+		return record;
+	}
+
+	/**
+	 * Appends a record to the pending batch. Must be called while holding the lock.
+	 */
+	private void append(Record record) {
+		byte[] payload = record.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+		header.putInt(payload.length);
+		header.putInt((int) crc.getValue());
+		pending.write(header.array(), 0, RECORD_HEADER_SIZE);
+		pending.write(payload, 0, payload.length);
+	}
+
+	/**
+	 * Streams the given users to the snapshot file, encoding one user at a time. The snapshot is written to a temporary file first
+	 * and then atomically moved into place.
+	 */
+	private void writeSnapshot(long snapshotSequence, Map<String, UserData> users) throws IOException {
+		File tmp = new File(snapshotFile.getPath() + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(tmp); BufferedOutputStream out = new BufferedOutputStream(file)) {
+			Record header = new Record();
+			header.writeInt(SNAPSHOT_MAGIC);
+			header.writeInt(SNAPSHOT_VERSION);
+			header.writeLong(snapshotSequence);
+			header.writeInt(users.size());
+			out.write(header.toByteArray());
+			for (Map.Entry<String, UserData> entry : users.entrySet()) {
+				Record record = new Record();
+				record.writeString(entry.getKey());
+				writeUserData(record, entry.getValue());
+				out.write(record.toByteArray());
+			}
+			out.flush();
+			file.getFD().sync();
+		}
+		Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logger.debug("Wrote session snapshot with {} users at sequence {}", users.size(), snapshotSequence);
+	}
+
+	/**
+	 * Restores the state from the snapshot and the journal tail, and opens the journal for appending.
+	 */
+	private void recover() throws IOException {
+		long snapshotSequence = 0;
+		if (snapshotFile.exists()) {
+			try (RandomAccessFile file = new RandomAccessFile(snapshotFile, "r")) {
+				ByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+				if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+					throw new IOException("Unsupported session snapshot format in '" + snapshotFile + "'");
+				}
+				snapshotSequence = buffer.getLong();
+				int count = buffer.getInt();
+				for (int i = 0; i < count; i++) {
+					String username = readString(buffer);
+					readUserData(buffer, username);
+				}
+				logger.debug("Loaded session snapshot with {} users at sequence {}", count, snapshotSequence);
+			} catch (BufferUnderflowException e) {
+				throw new IOException("Truncated or corrupt session snapshot '" + snapshotFile + "'", e);
+			}
+		}
+		sequence = snapshotSequence;
+
+		RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+		journal = file.getChannel();
+		long valid = 0;
+		int replayed = 0;
+		if (journal.size() > 0) {
+			ByteBuffer buffer = journal.map(FileChannel.MapMode.READ_ONLY, 0, journal.size());
+			while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) {
+					break;
+				}
+				byte[] payload = new byte[length];
+				buffer.get(payload);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				ByteBuffer record = ByteBuffer.wrap(payload);
+				long seq = record.getLong();
+				if (seq > snapshotSequence) {
+					replay(record);
+					replayed++;
+				}
+				sequence = Math.max(sequence, seq);
+				valid = buffer.position();
+			}
+		}
+		if (valid < journal.size()) {
+			logger.warn("Discarding {} bytes of incomplete records at the end of session journal '{}'", journal.size() - valid, journalFile);
+			journal.truncate(valid);
+			journal.force(true);
+		}
+		journal.position(valid);
+		logger.debug("Replayed {} session journal records", replayed);
+	}
+
+	/**
+	 * Applies a single journal record (positioned after its sequence number) to the in-memory state.
+	 */
+	private void replay(ByteBuffer record) {
+		byte op = record.get();
+		String username = readString(record);
+		switch (op) {
+			case OP_INIT:
+				delegate.init(username);
+				break;
+			case OP_SET:
+				int count = record.getInt();
+				Map<String, String> vars = new HashMap<>();
+				for (int i = 0; i < count; i++) {
+					vars.put(readString(record), readString(record));
+				}
+				delegate.set(username, vars);
+				break;
+			case OP_HISTORY:
+				delegate.addHistory(username, readString(record), readString(record));
+				break;
+			case OP_LAST_MATCH:
+				delegate.setLastMatch(username, readString(record));
+				break;
+			case OP_CLEAR:
+				delegate.clear(username);
+				break;
+			case OP_CLEAR_ALL:
+				delegate.clearAll();
+				break;
+			case OP_PUT:
+				readUserData(record, username);
+				break;
+			default:
+				throw new RiveScriptException("Unknown session journal operation: " + op);
+		}
+	}
+
+	private void writeUserData(Record record, UserData data) {
+		record.writeString(data.getLastMatch());
+		record.writeInt(data.getVariables().size());
+		for (Map.Entry<String, String> var : data.getVariables().entrySet()) {
+			record.writeString(var.getKey());
+			record.writeString(var.getValue());
+		}
+		for (int i = 0; i < HISTORY_SIZE; i++) {
+			record.writeString(data.getHistory().getInput(i));
+			record.writeString(data.getHistory().getReply(i));
+		}
+	}
+
+	/**
+	 * Reads user data and replaces the in-memory state of the given user with it.
+	 */
+	private void readUserData(ByteBuffer buffer, String username) {
+		delegate.clear(username);
+		UserData data = delegate.init(username);
+		data.setLastMatch(readString(buffer));
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			data.setVariable(readString(buffer), readString(buffer));
+		}
+		for (int i = 0; i < HISTORY_SIZE; i++) {
+			data.getHistory().set(i, readString(buffer), readString(buffer));
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		int length = buffer.getInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Buffer for encoding a single journal record or snapshot.
+	 */
+	private static class Record {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		void writeByte(int value) {
+			try {
+				out.writeByte(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void writeInt(int value) {
+			try {
+				out.writeInt(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void writeLong(long value) {
+			try {
+				out.writeLong(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void writeString(String value) {
+			if (value == null) {
+				writeInt(-1);
+				return;
+			}
+			byte[] data = value.getBytes(StandardCharsets.UTF_8);
+			writeInt(data.length);
+			bytes.write(data, 0, data.length);
+		}
+
+		byte[] toByteArray() {
+			return bytes.toByteArray();
+		}
+	}
+}
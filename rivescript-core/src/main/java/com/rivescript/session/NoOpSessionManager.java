@@ -22,7 +22,9 @@
 
 package com.rivescript.session;
 
-
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.Map;
 
@@ -32,7 +34,7 @@ import java.util.Map;
  * @author Noah Petherbridge
  * @author Marcel Overdijk
  */
-public class NoOpSessionManager implements SessionManager {
+public class NoOpSessionManager implements SessionManager, CursorSessionManager, ExportableSessionManager {
 
 	@Override
 	public UserData init(String username) {
@@ -70,6 +72,11 @@ public class NoOpSessionManager implements SessionManager {
 		return Collections.emptyMap();
 	}
 
+	@Override
+	public SessionCursor openCursor(int batchSize) {
+		return new IteratorSessionCursor(Collections.<String, UserData>emptyMap().entrySet().iterator(), batchSize);
+	}
+
 	@Override
 	public String getLastMatch(String username) {
 		return null;
@@ -96,6 +103,19 @@ public class NoOpSessionManager implements SessionManager {
 	public void thaw(String username, ThawAction action) {
 	}
 
+	@Override
+	public void exportSessions(OutputStream out) throws IOException {
+		new SessionCodec.Encoder(out).finish();
+	}
+
+	@Override
+	public void importSessions(InputStream in) throws IOException {
+		SessionCodec.Decoder decoder = new SessionCodec.Decoder(in);
+		while (decoder.read() != null) {
+			// Discard.
+		}
+	}
+
 	private UserData noOpSession() {
 		UserData userData = new UserData();
 		userData.setLastMatch("");
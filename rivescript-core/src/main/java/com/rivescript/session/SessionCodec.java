@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.rivescript.session.SessionManager.HISTORY_SIZE;
+
+/**
+ * Compact, versioned binary codec for exporting and importing user sessions.
+ * <p>
+ * A stream starts with a magic number and a format version, followed by one record per user and an end marker.
+ * All lengths and counts are written as unsigned varints and all strings as UTF-8. Variable names are deduplicated within a stream:
+ * the first occurrence of a name is written in full, later occurrences only refer to it by index.
+ * <p>
+ * The encoder buffers its output itself. The decoder reads the stream byte by byte and never past the end marker, so the stream can
+ * be read further afterwards; callers reading from a file or socket should pass a {@link java.io.BufferedInputStream}.
+ * <p>
+ * Usage:
+ * <p>
+ * <pre>
+ * <code>
+ * SessionCodec.Encoder encoder = new SessionCodec.Encoder(out);
+ * encoder.write("user", userData);
+ * encoder.finish();
+ *
+ * SessionCodec.Decoder decoder = new SessionCodec.Decoder(in);
+ * Map.Entry&lt;String, UserData&gt; entry;
+ * while ((entry = decoder.read()) != null) {
+ *     ...
+ * }
+ * </code>
+ * </pre>
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class SessionCodec {
+
+	/**
+	 * The current format version.
+	 */
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = new byte[] {'R', 'S', 'S', 'B'};
+
+	private static final int RECORD_END = 0;
+	private static final int RECORD_USER = 1;
+
+	/**
+	 * The maximum number of distinct variable names remembered within a stream.
+	 */
+	private static final int MAX_NAMES = 65536;
+
+	/**
+	 * The maximum length in bytes of a single string, which bounds the memory a corrupt stream can make the decoder allocate.
+	 */
+	static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+	private SessionCodec() {
+	}
+
+	/**
+	 * Exports all sessions of a session manager to a stream. The session manager's own export is used if it implements
+	 * {@link ExportableSessionManager}, otherwise its sessions are obtained with {@link SessionManager#getAll()}.
+	 * The stream is not closed.
+	 *
+	 * @param sessions the session manager
+	 * @param out      the output stream
+	 * @throws IOException in case of an I/O error
+	 */
+	public static void exportSessions(SessionManager sessions, OutputStream out) throws IOException {
+		if (sessions instanceof ExportableSessionManager) {
+			((ExportableSessionManager) sessions).exportSessions(out);
+			return;
+		}
+		Encoder encoder = new Encoder(out);
+		for (Map.Entry<String, UserData> entry : sessions.getAll().entrySet()) {
+			encoder.write(entry.getKey(), entry.getValue());
+		}
+		encoder.finish();
+	}
+
+	/**
+	 * Imports sessions written by {@link #exportSessions(SessionManager, OutputStream)} into a session manager, replacing any
+	 * existing session of the same user. The session manager's own import is used if it implements {@link ExportableSessionManager},
+	 * otherwise the sessions are restored through the public {@link SessionManager} API. The stream is not closed.
+	 *
+	 * @param sessions the session manager
+	 * @param in       the input stream
+	 * @throws IOException in case of an I/O error or an invalid stream
+	 */
+	public static void importSessions(SessionManager sessions, InputStream in) throws IOException {
+		if (sessions instanceof ExportableSessionManager) {
+			((ExportableSessionManager) sessions).importSessions(in);
+			return;
+		}
+		Decoder decoder = new Decoder(in);
+		Map.Entry<String, UserData> entry;
+		while ((entry = decoder.read()) != null) {
+			restore(sessions, entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Restores a user's session through the public {@link SessionManager} API, replacing any existing session of that user.
+	 *
+	 * @param sessions the session manager
+	 * @param username the username
+	 * @param data     the user data to restore
+	 */
+	static void restore(SessionManager sessions, String username, UserData data) {
+		sessions.clear(username);
+		sessions.init(username);
+		sessions.set(username, data.getVariables());
+		// Replay the history from the oldest to the newest entry.
+		for (int i = HISTORY_SIZE - 1; i >= 0; i--) {
+			sessions.addHistory(username, data.getHistory().getInput(i), data.getHistory().getReply(i));
+		}
+		sessions.setLastMatch(username, data.getLastMatch());
+	}
+
+	/**
+	 * Streaming encoder for user sessions.
+	 */
+	public static class Encoder {
+
+		private final OutputStream out;
+		private final Map<String, Integer> names = new HashMap<>();
+		private boolean started;
+
+		/**
+		 * Creates a new {@link Encoder} writing to the given stream. Unless it is an in-memory stream, the stream is buffered
+		 * until {@link #finish()}.
+		 *
+		 * @param out the output stream
+		 */
+		public Encoder(OutputStream out) {
+			this.out = out instanceof ByteArrayOutputStream || out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out);
+		}
+
+		/**
+		 * Writes a user's session.
+		 *
+		 * @param username the username
+		 * @param data     the user data
+		 * @throws IOException in case of an I/O error
+		 */
+		public void write(String username, UserData data) throws IOException {
+			start();
+			writeVarint(RECORD_USER);
+			writeString(username);
+			writeString(data.getLastMatch());
+			Map<String, String> variables = data.getVariables();
+			writeVarint(variables.size());
+			for (Map.Entry<String, String> var : variables.entrySet()) {
+				writeName(var.getKey());
+				writeString(var.getValue());
+			}
+			History history = data.getHistory();
+			writeVarint(HISTORY_SIZE);
+			for (int i = 0; i < HISTORY_SIZE; i++) {
+				writeString(history.getInput(i));
+				writeString(history.getReply(i));
+			}
+		}
+
+		/**
+		 * Writes the end marker and flushes the stream. The underlying stream is not closed.
+		 *
+		 * @throws IOException in case of an I/O error
+		 */
+		public void finish() throws IOException {
+			start();
+			writeVarint(RECORD_END);
+			out.flush();
+		}
+
+		private void start() throws IOException {
+			if (!started) {
+				out.write(MAGIC);
+				writeVarint(VERSION);
+				started = true;
+			}
+		}
+
+		/**
+		 * Writes a variable name as a reference to an earlier occurrence ({@code index + 1}),
+		 * or as {@code 0} followed by the name itself.
+		 */
+		private void writeName(String name) throws IOException {
+			Integer index = names.get(name);
+			if (index != null) {
+				writeVarint(index + 1);
+			} else {
+				writeVarint(0);
+				writeString(name);
+				if (names.size() < MAX_NAMES) {
+					names.put(name, names.size());
+				}
+			}
+		}
+
+		/**
+		 * Writes a string as its UTF-8 length plus one (with {@code 0} meaning {@code null}), followed by the UTF-8 bytes.
+		 */
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarint(0);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > MAX_STRING_LENGTH) {
+				throw new IOException("Session string too long: " + bytes.length + " bytes");
+			}
+			writeVarint(bytes.length + 1);
+			out.write(bytes);
+		}
+
+		private void writeVarint(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+	}
+
+	/**
+	 * Streaming decoder for user sessions.
+	 */
+	public static class Decoder {
+
+		private final InputStream in;
+		private final List<String> names = new ArrayList<>();
+		private boolean started;
+		private boolean finished;
+
+		/**
+		 * Creates a new {@link Decoder} reading from the given stream.
+		 *
+		 * @param in the input stream
+		 */
+		public Decoder(InputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * Reads the next user's session.
+		 *
+		 * @return the username and user data, or {@code null} at the end of the stream
+		 * @throws IOException in case of an I/O error or an invalid stream
+		 */
+		public Map.Entry<String, UserData> read() throws IOException {
+			if (finished) {
+				return null;
+			}
+			start();
+			int type = readVarint();
+			if (type == RECORD_END) {
+				finished = true;
+				return null;
+			} else if (type != RECORD_USER) {
+				throw new IOException("Unknown session record type: " + type);
+			}
+
+			String username = readString();
+			UserData data = new UserData();
+			data.setLastMatch(readString());
+			int count = readCount();
+			for (int i = 0; i < count; i++) {
+				String name = readName();
+				data.setVariable(name, readString());
+			}
+			int size = readCount();
+			for (int i = 0; i < size; i++) {
+				String input = readString();
+				String reply = readString();
+				if (i < HISTORY_SIZE) {
+					data.getHistory().set(i, input, reply);
+				}
+			}
+			return new AbstractMap.SimpleImmutableEntry<>(username, data);
+		}
+
+		private void start() throws IOException {
+			if (!started) {
+				byte[] magic = new byte[MAGIC.length];
+				readFully(magic);
+				for (int i = 0; i < MAGIC.length; i++) {
+					if (magic[i] != MAGIC[i]) {
+						throw new IOException("Not a RiveScript session stream");
+					}
+				}
+				int version = readVarint();
+				if (version > VERSION) {
+					throw new IOException("Unsupported session stream version: " + version);
+				}
+				started = true;
+			}
+		}
+
+		private String readName() throws IOException {
+			int ref = readVarint();
+			if (ref != 0) {
+				if (ref < 0 || ref > names.size()) {
+					throw new IOException("Invalid variable name reference: " + ref);
+				}
+				return names.get(ref - 1);
+			}
+			String name = readString();
+			if (names.size() < MAX_NAMES) {
+				names.add(name);
+			}
+			return name;
+		}
+
+		private String readString() throws IOException {
+			int length = readVarint();
+			if (length == 0) {
+				return null;
+			}
+			if (length < 0 || length - 1 > MAX_STRING_LENGTH) {
+				throw new IOException("Corrupt session stream");
+			}
+			byte[] bytes = new byte[length - 1];
+			readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		private int readCount() throws IOException {
+			int count = readVarint();
+			if (count < 0) {
+				throw new IOException("Corrupt session stream");
+			}
+			return count;
+		}
+
+		private int readVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 32; shift += 7) {
+				int b = in.read();
+				if (b < 0) {
+					throw new EOFException("Unexpected end of session stream");
+				}
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint in session stream");
+		}
+
+		private void readFully(byte[] bytes) throws IOException {
+			int offset = 0;
+			while (offset < bytes.length) {
+				int read = in.read(bytes, offset, bytes.length - offset);
+				if (read < 0) {
+					throw new EOFException("Unexpected end of session stream");
+				}
+				offset += read;
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * Cursor for walking all user sessions in batches, as returned by {@link CursorSessionManager#openCursor(int)}.
+ * <p>
+ * Cursors are weakly consistent: they never throw {@link java.util.ConcurrentModificationException} and do not block replies,
+ * but sessions created, changed or cleared while iterating may or may not be reflected in the batches.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public interface SessionCursor extends Closeable {
+
+	/**
+	 * Returns whether there are more sessions to read.
+	 *
+	 * @return whether there are more sessions
+	 */
+	boolean hasNext();
+
+	/**
+	 * Returns the next batch of sessions, holding at most the batch size the cursor was opened with.
+	 *
+	 * @return the usernames and their user data
+	 * @throws java.util.NoSuchElementException in case there are no more sessions
+	 */
+	Map<String, UserData> next();
+
+	/**
+	 * Releases the resources held by this cursor.
+	 */
+	@Override
+	void close();
+}
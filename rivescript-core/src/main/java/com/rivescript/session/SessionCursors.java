@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.rivescript.session;
+
+/**
+ * Static helpers for {@link SessionCursor}s.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class SessionCursors {
+
+	private SessionCursors() {
+	}
+
+	/**
+	 * Opens a cursor over all users of a session manager, returning their user data in batches. The session manager's own cursor
+	 * is used if it implements {@link CursorSessionManager}, otherwise the sessions are obtained with {@link SessionManager#getAll()}.
+	 *
+	 * @param sessions  the session manager
+	 * @param batchSize the maximum number of sessions per batch
+	 * @return the cursor
+	 */
+	public static SessionCursor open(SessionManager sessions, int batchSize) {
+		if (sessions instanceof CursorSessionManager) {
+			return ((CursorSessionManager) sessions).openCursor(batchSize);
+		}
+		return new IteratorSessionCursor(sessions.getAll().entrySet().iterator(), batchSize);
+	}
+}
@@ -107,6 +107,9 @@ public interface SessionManager {
 
 	/**
 	 * Returns all variables about all users.
+	 * <p>
+	 * This requires all sessions to be materialized at once. Use {@link SessionCursors#open(SessionManager, int)} to walk all sessions
+	 * in batches instead.
 	 *
 	 * @return the users and their user data
 	 */
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Interface for persisting changed user sessions, used by the {@link WriteBehindSessionManager}.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public interface SessionWriter {
+
+	/**
+	 * Persists the sessions that changed since the previous write.
+	 * <p>
+	 * Many changes to the same user are coalesced into a single entry holding the latest state of that user.
+	 *
+	 * @param updated the usernames and copies of the user data of the updated sessions
+	 * @param deleted the usernames of the cleared sessions
+	 */
+	void write(Map<String, UserData> updated, Set<String> deleted);
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file holding spilled user sessions, used as the cold tier of the {@link TieredSessionManager}.
+ * <p>
+ * Each record holds either a user's session encoded with the {@link SessionCodec}, or a tombstone for a user that was removed from
+ * the file. An in-memory index maps usernames to the offset of their latest record and is rebuilt by scanning the file on open.
+ * When more than half of the file is garbage (replaced records and tombstones), the live records are rewritten to a new file.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+class SpillFile implements Closeable {
+
+	private static final int HEADER_SIZE = 9; // length + checksum + type
+	private static final byte TYPE_PUT = 1;
+	private static final byte TYPE_DELETE = 2;
+	private static final long MIN_COMPACT_SIZE = 1024 * 1024;
+	private static final double MAX_GARBAGE_RATIO = 0.5;
+
+	private static Logger logger = LoggerFactory.getLogger(SpillFile.class);
+
+	private final File file;
+	private final long minCompactSize;
+	private final ConcurrentHashMap<String, Long> index;
+	private final ReentrantLock lock = new ReentrantLock();
+	private FileChannel channel;
+	private long liveBytes;
+
+	SpillFile(File file) throws IOException {
+		this(file, MIN_COMPACT_SIZE);
+	}
+
+	/**
+	 * @param minCompactSize the size in bytes below which the file is never compacted
+	 */
+	SpillFile(File file, long minCompactSize) throws IOException {
+		this.file = file;
+		this.minCompactSize = minCompactSize;
+		this.index = new ConcurrentHashMap<>();
+		this.channel = new RandomAccessFile(file, "rw").getChannel();
+		scan();
+	}
+
+	/**
+	 * Returns whether a user has a session in this file.
+	 */
+	boolean contains(String username) {
+		return index.containsKey(username);
+	}
+
+	/**
+	 * Returns the number of sessions in this file.
+	 */
+	int size() {
+		return index.size();
+	}
+
+	/**
+	 * Returns a snapshot of the usernames in this file.
+	 */
+	List<String> usernames() {
+		return new ArrayList<>(index.keySet());
+	}
+
+	/**
+	 * Appends a user's session, replacing any earlier one.
+	 */
+	void put(String username, UserData data) throws IOException {
+		lock.lock();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			SessionCodec.Encoder encoder = new SessionCodec.Encoder(out);
+			encoder.write(username, data);
+			encoder.finish();
+			Long previous = index.get(username);
+			if (previous != null) {
+				liveBytes -= recordSize(previous);
+			}
+			long offset = append(TYPE_PUT, out.toByteArray());
+			index.put(username, offset);
+			liveBytes += channel.size() - offset;
+			if (previous != null) {
+				compactIfNeeded();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reads a user's session, or returns {@code null} if the user has no session in this file.
+	 */
+	UserData get(String username) throws IOException {
+		lock.lock();
+		try {
+			Long offset = index.get(username);
+			if (offset == null) {
+				return null;
+			}
+			ByteBuffer header = readFully(offset, HEADER_SIZE);
+			byte[] payload = readFully(offset + HEADER_SIZE, header.getInt()).array();
+			return new SessionCodec.Decoder(new ByteArrayInputStream(payload)).read().getValue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes a user's session by appending a tombstone.
+	 */
+	void remove(String username) throws IOException {
+		lock.lock();
+		try {
+			Long offset = index.remove(username);
+			if (offset != null) {
+				liveBytes -= recordSize(offset);
+				append(TYPE_DELETE, username.getBytes(StandardCharsets.UTF_8));
+				compactIfNeeded();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes all sessions.
+	 */
+	void clear() throws IOException {
+		lock.lock();
+		try {
+			index.clear();
+			liveBytes = 0;
+			channel.truncate(0);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			channel.force(true);
+			channel.close();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private long append(byte type, byte[] payload) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(payload);
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+		buffer.putInt(payload.length);
+		buffer.putInt((int) crc.getValue());
+		buffer.put(type);
+		buffer.put(payload);
+		buffer.flip();
+		long offset = channel.size();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, offset + buffer.position());
+		}
+		return offset;
+	}
+
+	private long recordSize(long offset) throws IOException {
+		return HEADER_SIZE + readFully(offset, 4).getInt();
+	}
+
+	private ByteBuffer readFully(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of spill file '" + file + "'");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Rebuilds the index by scanning all records, discarding an incomplete record at the end of the file.
+	 */
+	private void scan() throws IOException {
+		long size = channel.size();
+		long offset = 0;
+		while (offset + HEADER_SIZE <= size) {
+			ByteBuffer header = readFully(offset, HEADER_SIZE);
+			int length = header.getInt();
+			int checksum = header.getInt();
+			byte type = header.get();
+			if (length < 0 || offset + HEADER_SIZE + length > size) {
+				break;
+			}
+			byte[] payload = readFully(offset + HEADER_SIZE, length).array();
+			CRC32 crc = new CRC32();
+			crc.update(type);
+			crc.update(payload);
+			if ((int) crc.getValue() != checksum) {
+				break;
+			}
+			if (type == TYPE_PUT) {
+				String username = new SessionCodec.Decoder(new ByteArrayInputStream(payload)).read().getKey();
+				Long previous = index.put(username, offset);
+				if (previous != null) {
+					liveBytes -= recordSize(previous);
+				}
+				liveBytes += HEADER_SIZE + length;
+			} else if (type == TYPE_DELETE) {
+				Long previous = index.remove(new String(payload, StandardCharsets.UTF_8));
+				if (previous != null) {
+					liveBytes -= recordSize(previous);
+				}
+			}
+			offset += HEADER_SIZE + length;
+		}
+		if (offset < size) {
+			logger.warn("Discarding {} bytes of incomplete records at the end of spill file '{}'", size - offset, file);
+			channel.truncate(offset);
+		}
+	}
+
+	/**
+	 * Rewrites the live records to a new file when the share of garbage exceeds {@link #MAX_GARBAGE_RATIO}.
+	 */
+	private void compactIfNeeded() throws IOException {
+		long size = channel.size();
+		if (size < minCompactSize || size - liveBytes <= size * MAX_GARBAGE_RATIO) {
+			return;
+		}
+		logger.debug("Compacting spill file '{}' ({} of {} bytes live)", file, liveBytes, size);
+		File tmp = new File(file.getPath() + ".tmp");
+		Map<String, Long> offsets = new HashMap<>();
+		try (FileChannel target = new RandomAccessFile(tmp, "rw").getChannel()) {
+			target.truncate(0);
+			for (Map.Entry<String, Long> entry : index.entrySet()) {
+				long length = recordSize(entry.getValue());
+				offsets.put(entry.getKey(), target.size());
+				long transferred = 0;
+				while (transferred < length) {
+					transferred += channel.transferTo(entry.getValue() + transferred, length - transferred, target);
+				}
+			}
+			target.force(true);
+		}
+		channel.close();
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		index.putAll(offsets);
+		liveBytes = channel.size();
+	}
+}
@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import com.rivescript.RiveScriptException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.rivescript.session.ThawAction.KEEP;
+
+/**
+ * A {@link SessionManager} that keeps recently active users in memory (the hot tier) and spills idle users to a local file (the cold
+ * tier), so long-tailed traffic does not keep every user on the heap.
+ * <p>
+ * A background thread periodically moves users who have not been accessed within the idle timeout to the cold tier, encoded with the
+ * {@link SessionCodec}. Any access to a spilled user transparently promotes the session back to the hot tier.
+ * Users with frozen user variables (see {@link #freeze(String)}) are never spilled.
+ * Access to a user is guarded by striped {@link ReentrantLock}s rather than monitors, so virtual threads blocked on spill file I/O
+ * do not pin their carrier thread.
+ * <p>
+ * The cold tier survives restarts: {@link #close()} spills all hot users, and the spill file is reopened on startup.
+ * Note that {@link #getAll()} only returns the hot users; use {@link #openCursor(int)} to iterate over all users.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class TieredSessionManager implements SessionManager, CursorSessionManager, ExportableSessionManager, Closeable {
+
+	/**
+	 * The default idle timeout in milliseconds after which users are spilled to the cold tier.
+	 */
+	public static final long DEFAULT_IDLE_TIMEOUT = 10 * 60 * 1000;
+
+	/**
+	 * The default interval in milliseconds between sweeps for idle users.
+	 */
+	public static final long DEFAULT_SWEEP_INTERVAL = 60 * 1000;
+
+	static final String SPILL_FILE = "sessions.spill";
+
+	private static final int LOCK_STRIPES = 64;
+
+	private static Logger logger = LoggerFactory.getLogger(TieredSessionManager.class);
+
+	private final ConcurrentHashMapSessionManager hot;
+	private final SpillFile cold;
+	private final ConcurrentHashMap<String, Long> lastAccess;
+	private final Set<String> frozen;
+	private final ReentrantLock[] locks;
+	private final long idleTimeout;
+	private final ScheduledExecutorService sweeper;
+
+	/**
+	 * Creates a new {@link TieredSessionManager} storing its spill file in the given directory, using the default idle timeout and
+	 * sweep interval.
+	 *
+	 * @param directory the directory to store the spill file in
+	 * @throws RiveScriptException in case the spill file cannot be opened
+	 */
+	public TieredSessionManager(File directory) {
+		this(directory, DEFAULT_IDLE_TIMEOUT, DEFAULT_SWEEP_INTERVAL);
+	}
+
+	/**
+	 * Creates a new {@link TieredSessionManager} storing its spill file in the given directory.
+	 *
+	 * @param directory     the directory to store the spill file in
+	 * @param idleTimeout   the idle timeout in milliseconds after which users are spilled to the cold tier
+	 * @param sweepInterval the interval in milliseconds between sweeps for idle users
+	 * @throws RiveScriptException in case the spill file cannot be opened
+	 */
+	public TieredSessionManager(File directory, long idleTimeout, long sweepInterval) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new RiveScriptException("Directory '" + directory + "' cannot be created");
+		}
+		File file = new File(directory, SPILL_FILE);
+		try {
+			this.cold = new SpillFile(file);
+		} catch (IOException e) {
+			throw new RiveScriptException("Error opening spill file '" + file + "'", e);
+		}
+		this.hot = new ConcurrentHashMapSessionManager();
+		this.lastAccess = new ConcurrentHashMap<>();
+		this.frozen = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.locks = new ReentrantLock[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+		this.idleTimeout = idleTimeout;
+
+		this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "rivescript-session-spill");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.sweeper.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					spillIdle();
+				} catch (RuntimeException e) {
+					logger.error("Error spilling idle sessions: {}", e.getMessage(), e);
+				}
+			}
+		}, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public UserData init(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			UserData userData = hot.init(username);
+			touch(username);
+			return userData;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void set(String username, String name, String value) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			hot.set(username, name, value);
+			touch(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void set(String username, Map<String, String> vars) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			hot.set(username, vars);
+			touch(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void addHistory(String username, String input, String reply) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			hot.addHistory(username, input, reply);
+			touch(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void setLastMatch(String username, String trigger) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			hot.setLastMatch(username, trigger);
+			touch(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String get(String username, String name) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			return hot.get(username, name);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public UserData get(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			return hot.get(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Map<String, UserData> getAll() {
+		return hot.getAll();
+	}
+
+	@Override
+	public SessionCursor openCursor(int batchSize) {
+		final Iterator<Map.Entry<String, UserData>> hotUsers = hot.getAll().entrySet().iterator();
+		final Iterator<String> coldUsers = cold.usernames().iterator();
+		return new IteratorSessionCursor(new Iterator<Map.Entry<String, UserData>>() {
+
+			private Map.Entry<String, UserData> next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					next = advance();
+				}
+				return next != null;
+			}
+
+			@Override
+			public Map.Entry<String, UserData> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Map.Entry<String, UserData> entry = next;
+				next = null;
+				return entry;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			private Map.Entry<String, UserData> advance() {
+				if (hotUsers.hasNext()) {
+					return hotUsers.next();
+				}
+				// Cold users are read without promoting them; users promoted in the meantime are skipped.
+				while (coldUsers.hasNext()) {
+					String username = coldUsers.next();
+					UserData data = readCold(username);
+					if (data != null) {
+						return new AbstractMap.SimpleImmutableEntry<>(username, data);
+					}
+				}
+				return null;
+			}
+		}, batchSize);
+	}
+
+	@Override
+	public String getLastMatch(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			return hot.getLastMatch(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public History getHistory(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			return hot.getHistory(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clear(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			hot.clear(username);
+			lastAccess.remove(username);
+			frozen.remove(username);
+			try {
+				cold.remove(username);
+			} catch (IOException e) {
+				throw new RiveScriptException("Error removing session of user '" + username + "' from spill file", e);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clearAll() {
+		// Take all locks in stripe order, so no user is promoted, changed or spilled while the tiers are cleared.
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		try {
+			hot.clearAll();
+			lastAccess.clear();
+			frozen.clear();
+			try {
+				cold.clear();
+			} catch (IOException e) {
+				throw new RiveScriptException("Error clearing spill file", e);
+			}
+		} finally {
+			for (int i = locks.length - 1; i >= 0; i--) {
+				locks[i].unlock();
+			}
+		}
+	}
+
+	@Override
+	public void freeze(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			if (hot.get(username) != null) {
+				hot.freeze(username);
+				frozen.add(username);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void thaw(String username, ThawAction action) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			promote(username);
+			hot.thaw(username, action);
+			if (action != KEEP) {
+				frozen.remove(username);
+			}
+			if (hot.get(username) != null) {
+				touch(username);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void exportSessions(OutputStream out) throws IOException {
+		SessionCodec.Encoder encoder = new SessionCodec.Encoder(out);
+		try (SessionCursor cursor = openCursor(1000)) {
+			while (cursor.hasNext()) {
+				for (Map.Entry<String, UserData> entry : cursor.next().entrySet()) {
+					encoder.write(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		encoder.finish();
+	}
+
+	@Override
+	public void importSessions(InputStream in) throws IOException {
+		SessionCodec.Decoder decoder = new SessionCodec.Decoder(in);
+		Map.Entry<String, UserData> entry;
+		while ((entry = decoder.read()) != null) {
+			String username = entry.getKey();
+			Lock lock = lockFor(username);
+			lock.lock();
+			try {
+				cold.remove(username);
+				SessionCodec.restore(hot, username, entry.getValue());
+				touch(username);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Spills all users who have not been accessed within the idle timeout to the cold tier.
+	 * <p>
+	 * This is done automatically by the background sweeper once per sweep interval.
+	 *
+	 * @return the number of spilled users
+	 * @throws RiveScriptException in case of an I/O error
+	 */
+	public int spillIdle() {
+		long idleSince = System.currentTimeMillis() - idleTimeout;
+		int count = 0;
+		for (Map.Entry<String, Long> entry : lastAccess.entrySet()) {
+			if (entry.getValue() <= idleSince && spill(entry.getKey(), false, idleSince)) {
+				count++;
+			}
+		}
+		if (count > 0) {
+			logger.debug("Spilled {} idle sessions, {} sessions remain in memory", count, hot.getAll().size());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of users in the hot tier.
+	 *
+	 * @return the number of users in memory
+	 */
+	public int getHotSize() {
+		return hot.getAll().size();
+	}
+
+	/**
+	 * Returns the number of users in the cold tier.
+	 *
+	 * @return the number of users in the spill file
+	 */
+	public int getColdSize() {
+		return cold.size();
+	}
+
+	/**
+	 * Stops the background sweeper, spills all users to the cold tier and closes the spill file.
+	 * <p>
+	 * Frozen user variables are not spilled and are lost.
+	 *
+	 * @throws IOException in case of an I/O error
+	 */
+	@Override
+	public void close() throws IOException {
+		sweeper.shutdown();
+		try {
+			sweeper.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		for (String username : new ArrayList<>(hot.getAll().keySet())) {
+			spill(username, true, 0);
+		}
+		cold.close();
+	}
+
+	/**
+	 * Moves a user from the cold tier to the hot tier, if needed, and records the access if the user exists. Must be called while holding
+	 * the user's lock.
+	 */
+	private void promote(String username) {
+		if (hot.get(username) == null && cold.contains(username)) {
+			try {
+				UserData data = cold.get(username);
+				if (data != null) {
+					SessionCodec.restore(hot, username, data);
+				}
+				cold.remove(username);
+			} catch (IOException e) {
+				throw new RiveScriptException("Error reading session of user '" + username + "' from spill file", e);
+			}
+		}
+		if (hot.get(username) != null) {
+			touch(username);
+		}
+	}
+
+	/**
+	 * Records an access to a user in the hot tier. Only users in the hot tier are tracked, so reads of unknown users do not grow the
+	 * access times. Must be called while holding the user's lock.
+	 */
+	private void touch(String username) {
+		lastAccess.put(username, System.currentTimeMillis());
+	}
+
+	/**
+	 * Moves a user from the hot tier to the cold tier.
+	 * <p>
+	 * Unless forced, the user's last access is checked again while holding the user's lock, so a user accessed after the sweep looked
+	 * at it stays in the hot tier.
+	 *
+	 * @param username  the username
+	 * @param force     whether to spill the user regardless of its last access and even if the user has frozen user variables
+	 * @param idleSince the time after which the user must not have been accessed, unless forced
+	 * @return whether the user was spilled
+	 */
+	boolean spill(String username, boolean force, long idleSince) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			if (!force) {
+				Long accessed = lastAccess.get(username);
+				if (accessed == null || accessed > idleSince || frozen.contains(username)) {
+					return false;
+				}
+			}
+			UserData data = hot.get(username);
+			if (data != null) {
+				try {
+					cold.put(username, data);
+				} catch (IOException e) {
+					throw new RiveScriptException("Error writing session of user '" + username + "' to spill file", e);
+				}
+				hot.clear(username);
+			}
+			lastAccess.remove(username);
+			frozen.remove(username);
+			return data != null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private UserData readCold(String username) {
+		try {
+			return cold.get(username);
+		} catch (IOException e) {
+			throw new RiveScriptException("Error reading session of user '" + username + "' from spill file", e);
+		}
+	}
+
+	private Lock lockFor(String username) {
+		return locks[(username.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+	}
+}
@@ -23,11 +23,16 @@
 package com.rivescript.session;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Container for user variables.
+ * <p>
+ * Copies made with {@link #copy()} share their variables and history with the original until either of them is modified
+ * (copy-on-write), so taking a copy is a constant time operation. Copying and modifying are synchronized on the instance, and a
+ * private copy is published through a volatile field, so a copy never loses a concurrent change.
  *
  * @author Noah Petherbridge
  * @author Marcel Overdijk
@@ -36,25 +41,43 @@ public class UserData implements Serializable {
 
 	private static final long serialVersionUID = -4112596798916704937L;
 
-	private Map<String, String> variables;
-	private String lastMatch;
+	private volatile Map<String, String> variables;
+	private volatile String lastMatch;
 	private History history;
+	private transient boolean shared; // guarded by this
 
 	public UserData() {
-		this.variables = new HashMap<>();
-		this.history = new History();
+		this(new HashMap<String, String>(), null, new History());
+	}
+
+	private UserData(Map<String, String> variables, String lastMatch, History history) {
+		this.variables = variables;
+		this.lastMatch = lastMatch;
+		this.history = history;
 	}
 
 	public String getVariable(String name) {
 		return variables.get(name);
 	}
 
+	/**
+	 * Returns a read-only view of the variables. Use {@link #setVariable(String, String)} to change them.
+	 *
+	 * @return the variables
+	 */
 	public Map<String, String> getVariables() {
-		return variables;
+		return Collections.unmodifiableMap(variables);
 	}
 
-	public void setVariable(String name, String value) {
-		variables.put(name, value);
+	public synchronized void setVariable(String name, String value) {
+		if (shared) {
+			Map<String, String> owned = new HashMap<>(variables);
+			owned.put(name, value);
+			variables = owned;
+			shared = false;
+		} else {
+			variables.put(name, value);
+		}
 	}
 
 	public String getLastMatch() {
@@ -69,6 +92,20 @@ public class UserData implements Serializable {
 		return history;
 	}
 
+	/**
+	 * Returns a copy of this user data.
+	 * <p>
+	 * The copy shares the variables and history with this user data until either of them is modified.
+	 *
+	 * @return the copy
+	 */
+	public synchronized UserData copy() {
+		UserData copy = new UserData(variables, lastMatch, history.copy());
+		shared = true;
+		copy.shared = true;
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) {
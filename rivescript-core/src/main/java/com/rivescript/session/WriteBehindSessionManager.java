@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link SessionManager} decorator that keeps track of which sessions changed, so a persistence layer only has to write those.
+ * <p>
+ * Every change marks the user's session as dirty and records a new version. The dirty sessions can be collected with
+ * {@link #drainDirty()}, or, when a {@link SessionWriter} is given, are written behind by a background thread once per flush interval.
+ * Many updates to the same user within an interval are coalesced into a single write of the latest state.
+ * <p>
+ * Changes and the snapshots taken for the {@link SessionWriter} are guarded by the same striped per-user locks, so a snapshot never
+ * sees a half applied change. Note that changes made directly to a {@link UserData} instance returned by this session manager are
+ * neither tracked nor guarded.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class WriteBehindSessionManager implements SessionManager, CursorSessionManager, ExportableSessionManager, Closeable {
+
+	/**
+	 * The default flush interval in milliseconds.
+	 */
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+	private static final int CLEAR_ALL_BATCH_SIZE = 1000;
+	private static final int LOCK_STRIPES = 64;
+
+	private static Logger logger = LoggerFactory.getLogger(WriteBehindSessionManager.class);
+
+	private final SessionManager delegate;
+	private final SessionWriter writer;
+	private final ConcurrentHashMap<String, Long> dirty;
+	private final AtomicLong version;
+	private final ReentrantLock[] locks;
+	private final ScheduledExecutorService flusher;
+
+	/**
+	 * Creates a new {@link WriteBehindSessionManager} which only tracks dirty sessions. Use {@link #drainDirty()} to collect them.
+	 *
+	 * @param delegate the session manager to decorate
+	 */
+	public WriteBehindSessionManager(SessionManager delegate) {
+		this(delegate, null, 0);
+	}
+
+	/**
+	 * Creates a new {@link WriteBehindSessionManager} writing dirty sessions using the default flush interval.
+	 *
+	 * @param delegate the session manager to decorate
+	 * @param writer   the session writer
+	 */
+	public WriteBehindSessionManager(SessionManager delegate, SessionWriter writer) {
+		this(delegate, writer, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	/**
+	 * Creates a new {@link WriteBehindSessionManager} writing dirty sessions once per flush interval.
+	 *
+	 * @param delegate      the session manager to decorate
+	 * @param writer        the session writer or {@code null} to only track dirty sessions
+	 * @param flushInterval the flush interval in milliseconds
+	 */
+	public WriteBehindSessionManager(SessionManager delegate, SessionWriter writer, long flushInterval) {
+		this.delegate = delegate;
+		this.writer = writer;
+		this.dirty = new ConcurrentHashMap<>();
+		this.version = new AtomicLong();
+		this.locks = new ReentrantLock[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+
+		if (writer != null) {
+			this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "rivescript-session-write-behind");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.flusher.scheduleWithFixedDelay(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch (RuntimeException e) {
+						logger.error("Error writing dirty sessions: {}", e.getMessage(), e);
+					}
+				}
+			}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		} else {
+			this.flusher = null;
+		}
+	}
+
+	@Override
+	public UserData init(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			if (delegate.get(username) == null) {
+				UserData userData = delegate.init(username);
+				markDirty(username);
+				return userData;
+			}
+			return delegate.init(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void set(String username, String name, String value) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			delegate.set(username, name, value);
+			markDirty(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void set(String username, Map<String, String> vars) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			delegate.set(username, vars);
+			markDirty(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void addHistory(String username, String input, String reply) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			delegate.addHistory(username, input, reply);
+			markDirty(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void setLastMatch(String username, String trigger) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			delegate.setLastMatch(username, trigger);
+			markDirty(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String get(String username, String name) {
+		return delegate.get(username, name);
+	}
+
+	@Override
+	public UserData get(String username) {
+		return delegate.get(username);
+	}
+
+	@Override
+	public Map<String, UserData> getAll() {
+		return delegate.getAll();
+	}
+
+	@Override
+	public SessionCursor openCursor(int batchSize) {
+		return SessionCursors.open(delegate, batchSize);
+	}
+
+	@Override
+	public String getLastMatch(String username) {
+		return delegate.getLastMatch(username);
+	}
+
+	@Override
+	public History getHistory(String username) {
+		return delegate.getHistory(username);
+	}
+
+	@Override
+	public void clear(String username) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			delegate.clear(username);
+			markDirty(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void clearAll() {
+		Set<String> usernames = new HashSet<>();
+		try (SessionCursor cursor = SessionCursors.open(delegate, CLEAR_ALL_BATCH_SIZE)) {
+			while (cursor.hasNext()) {
+				usernames.addAll(cursor.next().keySet());
+			}
+		}
+		delegate.clearAll();
+		for (String username : usernames) {
+			markDirty(username);
+		}
+	}
+
+	@Override
+	public void freeze(String username) {
+		delegate.freeze(username);
+	}
+
+	@Override
+	public void thaw(String username, ThawAction action) {
+		Lock lock = lockFor(username);
+		lock.lock();
+		try {
+			delegate.thaw(username, action);
+			markDirty(username);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void exportSessions(OutputStream out) throws IOException {
+		SessionCodec.exportSessions(delegate, out);
+	}
+
+	@Override
+	public void importSessions(InputStream in) throws IOException {
+		SessionCodec.Decoder decoder = new SessionCodec.Decoder(in);
+		Map.Entry<String, UserData> entry;
+		while ((entry = decoder.read()) != null) {
+			Lock lock = lockFor(entry.getKey());
+			lock.lock();
+			try {
+				SessionCodec.restore(delegate, entry.getKey(), entry.getValue());
+				markDirty(entry.getKey());
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Returns the version of a user's session, or {@code 0} if the session is not dirty.
+	 * <p>
+	 * Versions are taken from a single counter shared by all sessions, so a user's version increases on every change of that user but
+	 * not by exactly one, and versions of different users can be compared to order their changes.
+	 *
+	 * @param username the username
+	 * @return the version
+	 */
+	public long getVersion(String username) {
+		Long current = dirty.get(username);
+		return current != null ? current : 0;
+	}
+
+	/**
+	 * Returns the usernames of the sessions which changed since the previous call, and marks them as clean.
+	 * <p>
+	 * Sessions which change while draining are either included in the result or stay dirty for the next call.
+	 *
+	 * @return the usernames of the dirty sessions
+	 */
+	public Set<String> drainDirty() {
+		Set<String> drained = new HashSet<>();
+		for (String username : dirty.keySet()) {
+			if (dirty.remove(username) != null) {
+				drained.add(username);
+			}
+		}
+		return drained;
+	}
+
+	/**
+	 * Writes the dirty sessions to the {@link SessionWriter}. Does nothing if no session writer is configured.
+	 */
+	public void flush() {
+		if (writer == null) {
+			return;
+		}
+		Set<String> usernames = drainDirty();
+		if (usernames.isEmpty()) {
+			return;
+		}
+		Map<String, UserData> updated = new HashMap<>();
+		Set<String> deleted = new HashSet<>();
+		for (String username : usernames) {
+			Lock lock = lockFor(username);
+			lock.lock();
+			try {
+				UserData userData = delegate.get(username);
+				if (userData != null) {
+					updated.put(username, userData.copy());
+				} else {
+					deleted.add(username);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		logger.debug("Writing {} updated and {} deleted sessions", updated.size(), deleted.size());
+		try {
+			writer.write(updated, deleted);
+		} catch (RuntimeException e) {
+			// Keep the sessions dirty so they are retried on the next flush.
+			for (String username : usernames) {
+				markDirty(username);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Stops the background flusher and writes the remaining dirty sessions.
+	 */
+	@Override
+	public void close() {
+		if (flusher != null) {
+			flusher.shutdown();
+			try {
+				flusher.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		flush();
+	}
+
+	private void markDirty(String username) {
+		dirty.put(username, version.incrementAndGet());
+	}
+
+	private Lock lockFor(String username) {
+		return locks[(username.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+	}
+}
@@ -24,6 +24,8 @@ package com.rivescript.sorting;
 
 import com.rivescript.ast.Trigger;
 
+import java.util.regex.Pattern;
+
 /**
  * Holds a sorted trigger and the pointer to that trigger's data
  *
@@ -34,6 +36,11 @@ public class SortedTriggerEntry {
 
 	private String trigger;
 	private Trigger pointer;
+	private Pattern pattern;
+	private int[] wordIds = new int[0];
+	private int cost;
+	private boolean deterministic;
+	private boolean memoizable;
 
 	public SortedTriggerEntry(String trigger, Trigger pointer) {
 		this.trigger = trigger;
@@ -55,4 +62,69 @@ public class SortedTriggerEntry {
 	public void setPointer(Trigger pointer) {
 		this.pointer = pointer;
 	}
+
+	/**
+	 * Returns the precompiled regexp of the trigger, or {@code null} if the regexp has to be prepared per message.
+	 *
+	 * @return the regexp
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	public void setPattern(Pattern pattern) {
+		this.pattern = pattern;
+	}
+
+	/**
+	 * Returns the vocabulary ids of the whole words every message matching the trigger contains.
+	 *
+	 * @return the word ids
+	 */
+	public int[] getWordIds() {
+		return wordIds;
+	}
+
+	public void setWordIds(int[] wordIds) {
+		this.wordIds = wordIds;
+	}
+
+	/**
+	 * Returns the cost score of the trigger, or {@code 0} if the trigger is atomic.
+	 *
+	 * @return the cost score
+	 */
+	public int getCost() {
+		return cost;
+	}
+
+	public void setCost(int cost) {
+		this.cost = cost;
+	}
+
+	/**
+	 * Returns whether matching the trigger, and every trigger sorted before it, only depends on the topic and the message.
+	 *
+	 * @return whether the match can be remembered
+	 */
+	public boolean isDeterministic() {
+		return deterministic;
+	}
+
+	public void setDeterministic(boolean deterministic) {
+		this.deterministic = deterministic;
+	}
+
+	/**
+	 * Returns whether the reply of the trigger only depends on the topic and the message, so it can be remembered.
+	 *
+	 * @return whether the reply can be remembered
+	 */
+	public boolean isMemoizable() {
+		return memoizable;
+	}
+
+	public void setMemoizable(boolean memoizable) {
+		this.memoizable = memoizable;
+	}
 }
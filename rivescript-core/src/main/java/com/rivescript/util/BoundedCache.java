@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe, size-bounded cache evicting the least recently used entries.
+ * <p>
+ * The entries are spread over a number of stripes by the hash of their key. Each stripe is a small LRU map with its own lock, so
+ * threads working on different keys rarely contend. The size bound and the LRU order are kept per stripe.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class BoundedCache<K, V> {
+
+	private static final int DEFAULT_STRIPES = 16;
+
+	private final List<Stripe<K, V>> stripes;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates a new {@link BoundedCache} holding at most the given number of entries.
+	 *
+	 * @param maximumSize the maximum number of entries
+	 */
+	public BoundedCache(int maximumSize) {
+		this(maximumSize, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Creates a new {@link BoundedCache} holding at most the given number of entries, spread over the given number of stripes.
+	 *
+	 * @param maximumSize the maximum number of entries
+	 * @param stripes     the number of stripes
+	 */
+	public BoundedCache(int maximumSize, int stripes) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Maximum size must be positive");
+		}
+		stripes = Math.max(1, Math.min(stripes, maximumSize));
+		this.stripes = new ArrayList<>(stripes);
+		for (int i = 0; i < stripes; i++) {
+			// Spread the remainder over the first stripes, so the stripes add up to the maximum size.
+			this.stripes.add(new Stripe<K, V>(maximumSize / stripes + (i < maximumSize % stripes ? 1 : 0)));
+		}
+	}
+
+	/**
+	 * Returns the value cached for a key, or {@code null} if there is none.
+	 *
+	 * @param key the key
+	 * @return the value
+	 */
+	public V get(K key) {
+		Stripe<K, V> stripe = stripe(key);
+		V value;
+		synchronized (stripe) {
+			value = stripe.get(key);
+		}
+		if (value != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Caches a value for a key, evicting the least recently used entry of its stripe when full.
+	 *
+	 * @param key   the key
+	 * @param value the value
+	 */
+	public void put(K key, V value) {
+		Stripe<K, V> stripe = stripe(key);
+		synchronized (stripe) {
+			stripe.put(key, value);
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		for (Stripe<K, V> stripe : stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entries.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe<K, V> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the number of lookups which found a value.
+	 *
+	 * @return the number of hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups which found no value.
+	 *
+	 * @return the number of misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	private Stripe<K, V> stripe(K key) {
+		int hash = key.hashCode();
+		hash ^= hash >>> 16;
+		return stripes.get((hash & Integer.MAX_VALUE) % stripes.size());
+	}
+
+	private static class Stripe<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maximumSize;
+
+		Stripe(int maximumSize) {
+			super(16, 0.75f, true);
+			this.maximumSize = maximumSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maximumSize;
+		}
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.rivescript.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent computations of the same key: the first thread to {@link #join(Object) join} a key becomes the leader and
+ * computes the value, the threads joining while it does wait for its result instead of computing it again.
+ * <p>
+ * Usage:
+ * <p>
+ * <pre>
+ * <code>
+ * SingleFlight.Call&lt;V&gt; call = flights.join(key);
+ * if (call.isLeader()) {
+ *     try {
+ *         V value = compute(key);
+ *         call.complete(value);
+ *         return value;
+ *     } finally {
+ *         flights.leave(key, call);
+ *     }
+ * }
+ * if (call.await(timeout, unit) &amp;&amp; call.getResult() != null) {
+ *     return call.getResult();
+ * }
+ * return compute(key);
+ * </code>
+ * </pre>
+ * A leader may complete its call with {@code null} to release the waiting threads early, e.g. when its value turns out not to be
+ * shareable; the waiting threads then compute the value themselves.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class SingleFlight<K, V> {
+
+	private final ConcurrentHashMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Joins the computation of a key, becoming its leader if no other thread is computing it.
+	 *
+	 * @param key the key
+	 * @return the call
+	 */
+	public Call<V> join(K key) {
+		Call<V> call = new Call<>(true);
+		Call<V> current = calls.putIfAbsent(key, call);
+		if (current != null) {
+			coalesced.incrementAndGet();
+			return new Call<>(current);
+		}
+		return call;
+	}
+
+	/**
+	 * Ends the computation of a key by its leader, releasing the waiting threads if the call was not completed yet.
+	 *
+	 * @param key  the key
+	 * @param call the call of the leader
+	 */
+	public void leave(K key, Call<V> call) {
+		calls.remove(key, call);
+		call.complete(null);
+	}
+
+	/**
+	 * Returns the number of keys being computed.
+	 *
+	 * @return the number of keys
+	 */
+	public int size() {
+		return calls.size();
+	}
+
+	/**
+	 * Returns the number of threads which joined a computation of another thread.
+	 *
+	 * @return the number of coalesced threads
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * The computation of a key, as seen by one of the threads which joined it.
+	 *
+	 * @param <V> the type of the value
+	 */
+	public static class Call<V> {
+
+		private final boolean leader;
+		private final CountDownLatch done;
+		private final Call<V> shared;
+		private volatile V result;
+
+		private Call(boolean leader) {
+			this.leader = leader;
+			this.done = new CountDownLatch(1);
+			this.shared = this;
+		}
+
+		private Call(Call<V> shared) {
+			this.leader = false;
+			this.done = shared.done;
+			this.shared = shared;
+		}
+
+		/**
+		 * Returns whether this thread is the leader and has to compute the value.
+		 *
+		 * @return whether this thread is the leader
+		 */
+		public boolean isLeader() {
+			return leader;
+		}
+
+		/**
+		 * Completes the call with the computed value, or {@code null} to let the waiting threads compute it themselves, and releases
+		 * them. Only the first completion counts.
+		 *
+		 * @param value the value
+		 */
+		public void complete(V value) {
+			synchronized (shared) {
+				if (shared.done.getCount() > 0) {
+					shared.result = value;
+					shared.done.countDown();
+				}
+			}
+		}
+
+		/**
+		 * Waits for the leader to complete the call.
+		 *
+		 * @param timeout the maximum time to wait
+		 * @param unit    the time unit
+		 * @return whether the call was completed, {@code false} if the timeout elapsed
+		 * @throws InterruptedException if the thread was interrupted while waiting
+		 */
+		public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+			return done.await(timeout, unit);
+		}
+
+		/**
+		 * Returns the value the call was completed with.
+		 *
+		 * @return the value, or {@code null} if the call was not completed (yet) or completed without a value
+		 */
+		public V getResult() {
+			return shared.result;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Character trie over a list of strings, finding which of them occur in a text.
+ * <p>
+ * Finding the strings takes time proportional to the length of the text times the length of the longest string,
+ * independent of the number of strings.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class StringTrie {
+
+	private final Node root = new Node();
+
+	/**
+	 * Creates a new {@link StringTrie} over the given strings.
+	 *
+	 * @param strings the strings
+	 */
+	public StringTrie(List<String> strings) {
+		for (int i = 0; i < strings.size(); i++) {
+			Node node = root;
+			for (char c : strings.get(i).toCharArray()) {
+				Node child = node.children.get(c);
+				if (child == null) {
+					child = new Node();
+					node.children.put(c, child);
+				}
+				node = child;
+			}
+			if (node.index < 0) {
+				node.index = i;
+			}
+		}
+	}
+
+	/**
+	 * Returns the indexes of the strings occurring anywhere in the given text. Of duplicate strings only the first index is returned.
+	 *
+	 * @param text the text
+	 * @return the indexes of the strings, in ascending order
+	 */
+	public BitSet find(String text) {
+		BitSet found = new BitSet();
+		for (int start = 0; start < text.length(); start++) {
+			Node node = root;
+			for (int i = start; i < text.length(); i++) {
+				node = node.children.get(text.charAt(i));
+				if (node == null) {
+					break;
+				}
+				if (node.index >= 0) {
+					found.set(node.index);
+				}
+			}
+		}
+		return found;
+	}
+
+	private static class Node {
+
+		private final Map<Character, Node> children = new HashMap<>();
+		private int index = -1;
+	}
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import java.util.Arrays;
+
+/**
+ * A message split into its words once, so the reply pipeline can compare whole words instead of rescanning the characters.
+ * <p>
+ * Words are the runs of characters between spaces, as a trigger's literal words are always delimited by spaces in its regexp.
+ * Words known to the {@link Vocabulary} are resolved to their ids; the words themselves are not kept.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class Tokens {
+
+	private final int[] ids;
+	private final int[] knownIds;
+
+	/**
+	 * Splits a message into its words, without resolving their ids.
+	 *
+	 * @param text the message
+	 */
+	public Tokens(String text) {
+		this(text, Vocabulary.EMPTY);
+	}
+
+	/**
+	 * Splits a message into its words and resolves their ids.
+	 *
+	 * @param text       the message
+	 * @param vocabulary the vocabulary
+	 */
+	public Tokens(String text, Vocabulary vocabulary) {
+		int[] ids = new int[text.length() / 2 + 1];
+		int[] known = new int[ids.length];
+		int count = 0;
+		int knownCount = 0;
+		int start = 0;
+		for (int i = 0; i <= text.length(); i++) {
+			if (i == text.length() || text.charAt(i) == ' ') {
+				if (i > start) {
+					int id = vocabulary.getId(text, start, i);
+					ids[count++] = id;
+					if (id >= 0) {
+						known[knownCount++] = id;
+					}
+				}
+				start = i + 1;
+			}
+		}
+		this.ids = Arrays.copyOf(ids, count);
+		Arrays.sort(known, 0, knownCount);
+		this.knownIds = Arrays.copyOf(known, knownCount);
+	}
+
+	/**
+	 * Returns the number of words.
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return ids.length;
+	}
+
+	/**
+	 * Returns the id of a word, or {@code -1} if the word is not in the vocabulary.
+	 *
+	 * @param index the index of the word
+	 * @return the id
+	 */
+	public int getId(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * Returns whether the message contains all of the words with the given ids.
+	 *
+	 * @param ids the ids of the words
+	 * @return whether the message contains all words
+	 */
+	public boolean containsAll(int[] ids) {
+		for (int id : ids) {
+			if (id < 0 || Arrays.binarySearch(knownIds, id) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Interned words with dense integer ids, so words can be compared as {@code int}s.
+ * <p>
+ * A Bloom filter over the words rejects most unknown words straight from the characters of a message, without creating a
+ * {@link String} or looking it up.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class Vocabulary {
+
+	/**
+	 * The vocabulary without any words.
+	 */
+	public static final Vocabulary EMPTY = new Vocabulary(Collections.<String>emptyList());
+
+	private static final int BITS_PER_WORD = 10;
+
+	private final Map<String, Integer> ids;
+	private final String[] words;
+	private final long[] bloom;
+
+	/**
+	 * Creates a new {@link Vocabulary}, giving the words ids in iteration order. Duplicate words get a single id.
+	 *
+	 * @param words the words
+	 */
+	public Vocabulary(Collection<String> words) {
+		LinkedHashSet<String> distinct = new LinkedHashSet<>(words);
+		this.ids = new HashMap<>(distinct.size() * 2);
+		this.words = distinct.toArray(new String[0]);
+		this.bloom = new long[Math.max(1, (this.words.length * BITS_PER_WORD + 63) / 64)];
+		for (int i = 0; i < this.words.length; i++) {
+			this.ids.put(this.words[i], i);
+			int hash = hash(this.words[i], 0, this.words[i].length());
+			setBit(hash);
+			setBit(rehash(hash));
+			setBit(rehash(rehash(hash)));
+		}
+	}
+
+	/**
+	 * Returns the number of words.
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return words.length;
+	}
+
+	/**
+	 * Returns the word with the given id.
+	 *
+	 * @param id the id
+	 * @return the word
+	 */
+	public String getWord(int id) {
+		return words[id];
+	}
+
+	/**
+	 * Returns the id of a word, or {@code -1} if the word is unknown.
+	 *
+	 * @param word the word
+	 * @return the id
+	 */
+	public int getId(String word) {
+		return getId(word, 0, word.length());
+	}
+
+	/**
+	 * Returns the id of the word between the given offsets of a text, or {@code -1} if the word is unknown.
+	 *
+	 * @param text  the text
+	 * @param start the offset of the first character of the word
+	 * @param end   the offset after the last character of the word
+	 * @return the id
+	 */
+	public int getId(CharSequence text, int start, int end) {
+		int hash = hash(text, start, end);
+		if (!getBit(hash) || !getBit(rehash(hash)) || !getBit(rehash(rehash(hash)))) {
+			return -1;
+		}
+		Integer id = ids.get(text.subSequence(start, end).toString());
+		return id != null ? id : -1;
+	}
+
+	/**
+	 * Returns the ids of the given words, with {@code -1} for unknown words.
+	 *
+	 * @param words the words
+	 * @return the ids
+	 */
+	public int[] getIds(Collection<String> words) {
+		int[] result = new int[words.size()];
+		int i = 0;
+		for (String word : words) {
+			result[i++] = getId(word);
+		}
+		return result;
+	}
+
+	private static int hash(CharSequence text, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		return hash;
+	}
+
+	private static int rehash(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		return hash;
+	}
+
+	private void setBit(int hash) {
+		int bit = (hash & Integer.MAX_VALUE) % (bloom.length * 64);
+		bloom[bit >>> 6] |= 1L << bit;
+	}
+
+	private boolean getBit(int hash) {
+		int bit = (hash & Integer.MAX_VALUE) % (bloom.length * 64);
+		return (bloom[bit >>> 6] & (1L << bit)) != 0;
+	}
+}
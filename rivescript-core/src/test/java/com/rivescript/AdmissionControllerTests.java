@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript;
+
+import com.rivescript.exception.OverloadedException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.rivescript.RiveScript.DEFAULT_OVERLOADED_MESSAGE;
+import static com.rivescript.RiveScript.DEFAULT_RATE_LIMITED_MESSAGE;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link AdmissionController}.
+ *
+ * @author Marcel Overdijk
+ */
+public class AdmissionControllerTests {
+
+	@Test
+	public void testConcurrencyLimit() {
+		AdmissionController admissionController = AdmissionController.newBuilder()
+				.initialLimit(2)
+				.maxQueueSize(0)
+				.build();
+		AdmissionController.Permit permit1 = admissionController.admit("user1");
+		AdmissionController.Permit permit2 = admissionController.admit("user2");
+		AdmissionController.Permit permit3 = admissionController.admit("user3");
+		assertThat(permit1.isAdmitted(), is(equalTo(true)));
+		assertThat(permit2.isAdmitted(), is(equalTo(true)));
+		assertThat(permit3.isAdmitted(), is(equalTo(false)));
+		assertThat(permit3.isRateLimited(), is(equalTo(false)));
+		assertThat(admissionController.getInFlight(), is(equalTo(2)));
+		assertThat(admissionController.getOverloadedCount(), is(equalTo(1L)));
+
+		// The first reply was fast while the limit was in use, so the limit grows.
+		permit1.release();
+		permit1.release();
+		permit2.release();
+		assertThat(admissionController.getInFlight(), is(equalTo(0)));
+		assertThat(admissionController.getLimit(), is(equalTo(3)));
+	}
+
+	@Test
+	public void testQueueTimeout() {
+		AdmissionController admissionController = AdmissionController.newBuilder()
+				.initialLimit(1)
+				.maxQueueSize(1)
+				.maxQueueWait(10, TimeUnit.MILLISECONDS)
+				.build();
+		AdmissionController.Permit permit = admissionController.admit("user1");
+		assertThat(admissionController.admit("user2").isAdmitted(), is(equalTo(false)));
+		assertThat(admissionController.getQueued(), is(equalTo(0)));
+		permit.release();
+		assertThat(admissionController.admit("user2").isAdmitted(), is(equalTo(true)));
+	}
+
+	@Test
+	public void testQueueHandOver() throws InterruptedException {
+		final AdmissionController admissionController = AdmissionController.newBuilder()
+				.initialLimit(1)
+				.maxQueueWait(5, TimeUnit.SECONDS)
+				.build();
+		final AdmissionController.Permit permit = admissionController.admit("user1");
+		Thread releaser = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				while (admissionController.getQueued() == 0) {
+					Thread.yield();
+				}
+				permit.release();
+			}
+		});
+		releaser.start();
+		assertThat(admissionController.admit("user2").isAdmitted(), is(equalTo(true)));
+		releaser.join();
+	}
+
+	@Test
+	public void testMultiplicativeDecrease() throws InterruptedException {
+		AdmissionController admissionController = AdmissionController.newBuilder()
+				.initialLimit(10)
+				.backoffRatio(0.5)
+				.latencyThreshold(1, TimeUnit.MILLISECONDS)
+				.build();
+		AdmissionController.Permit permit = admissionController.admit("user1");
+		Thread.sleep(5);
+		permit.release();
+		assertThat(admissionController.getLimit(), is(equalTo(5)));
+	}
+
+	@Test
+	public void testMultiplicativeDecreaseOncePerWindow() throws InterruptedException {
+		AdmissionController admissionController = AdmissionController.newBuilder()
+				.initialLimit(10)
+				.backoffRatio(0.5)
+				.latencyThreshold(1, TimeUnit.MILLISECONDS)
+				.build();
+		List<AdmissionController.Permit> permits = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			permits.add(admissionController.admit("user" + i));
+		}
+		Thread.sleep(5);
+
+		// A burst of slow replies admitted together backs off a single step.
+		for (AdmissionController.Permit permit : permits) {
+			permit.release();
+		}
+		assertThat(admissionController.getLimit(), is(equalTo(5)));
+
+		// A slow reply admitted after the backoff starts the next window.
+		AdmissionController.Permit permit = admissionController.admit("user1");
+		Thread.sleep(5);
+		permit.release();
+		assertThat(admissionController.getLimit(), is(equalTo(2)));
+	}
+
+	@Test
+	public void testUserRate() {
+		AdmissionController admissionController = AdmissionController.newBuilder()
+				.userRate(0.001, 2)
+				.build();
+		admissionController.admit("user1").release();
+		admissionController.admit("user1").release();
+		AdmissionController.Permit permit = admissionController.admit("user1");
+		assertThat(permit.isAdmitted(), is(equalTo(false)));
+		assertThat(permit.isRateLimited(), is(equalTo(true)));
+		assertThat(admissionController.admit("user2").isAdmitted(), is(equalTo(true)));
+		assertThat(admissionController.getRateLimitedCount(), is(equalTo(1L)));
+	}
+
+	@Test
+	public void testReplyRejected() {
+		AdmissionController admissionController = AdmissionController.newBuilder()
+				.initialLimit(1)
+				.maxLimit(1)
+				.maxQueueSize(0)
+				.userRate(0.001, 1)
+				.build();
+		RiveScript rs = new RiveScript(Config.newBuilder().admissionController(admissionController).build());
+		rs.stream("+ hello bot\n- Hello human.");
+		rs.sortReplies();
+		assertThat(rs.reply("user1", "hello bot"), is(equalTo("Hello human.")));
+		assertThat(rs.reply("user1", "hello bot"), is(equalTo(DEFAULT_RATE_LIMITED_MESSAGE)));
+
+		AdmissionController.Permit permit = admissionController.admit("user2");
+		assertThat(rs.reply("user3", "hello bot"), is(equalTo(DEFAULT_OVERLOADED_MESSAGE)));
+		permit.release();
+		assertThat(rs.reply("user3", "hello bot"), is(equalTo("Hello human.")));
+	}
+
+	@Test
+	public void testReplyRejectedThrowsException() {
+		AdmissionController admissionController = AdmissionController.newBuilder()
+				.initialLimit(1)
+				.maxQueueSize(0)
+				.build();
+		RiveScript rs = new RiveScript(Config.newBuilder()
+				.throwExceptions(true)
+				.admissionController(admissionController)
+				.build());
+		rs.stream("+ hello bot\n- Hello human.");
+		rs.sortReplies();
+		admissionController.admit("user1");
+		try {
+			rs.reply("user2", "hello bot");
+			fail("Expected an OverloadedException");
+		} catch (OverloadedException e) {
+			assertThat(e.getMessage(), is(equalTo(DEFAULT_OVERLOADED_MESSAGE)));
+		}
+	}
+}
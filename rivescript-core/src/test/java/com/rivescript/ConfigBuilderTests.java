@@ -28,6 +28,8 @@ import org.junit.Test;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import static com.rivescript.ConcatMode.NEWLINE;
 import static com.rivescript.ConcatMode.NONE;
@@ -151,6 +153,32 @@ public class ConfigBuilderTests {
 		assertThat(config.getDepth(), is(equalTo(10)));
 	}
 
+	@Test
+	public void testBuildWithRegexBudget() {
+		Config config = Config.newBuilder().regexBudget(100000).build();
+		assertThat(config.getRegexBudget(), is(equalTo(100000)));
+		assertThat(Config.newBuilder().build().getRegexBudget(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testBuildWithReplyCacheSize() {
+		Config config = Config.newBuilder().replyCacheSize(100).build();
+		assertThat(config.getReplyCacheSize(), is(equalTo(100)));
+	}
+
+	@Test
+	public void testBuildWithMatchCacheSize() {
+		Config config = Config.newBuilder().matchCacheSize(100).build();
+		assertThat(config.getMatchCacheSize(), is(equalTo(100)));
+	}
+
+	@Test
+	public void testBuildWithCoalesceReplies() {
+		Config config = Config.newBuilder().coalesceReplies(true).build();
+		assertThat(config.isCoalesceReplies(), is(equalTo(true)));
+		assertThat(Config.newBuilder().build().isCoalesceReplies(), is(equalTo(false)));
+	}
+
 	@Test
 	public void testBuildWithSessionManagerIsNull() {
 		Config config = Config.newBuilder().sessionManager(null).build();
@@ -164,6 +192,20 @@ public class ConfigBuilderTests {
 		assertThat(config.getSessionManager(), is(equalTo(sessionManager)));
 	}
 
+	@Test
+	public void testBuildWithExecutor() {
+		Executor executor = Executors.newSingleThreadExecutor();
+		Config config = Config.newBuilder().executor(executor).build();
+		assertThat(config.getExecutor(), is(equalTo(executor)));
+	}
+
+	@Test
+	public void testBuildWithAdmissionController() {
+		AdmissionController admissionController = AdmissionController.newBuilder().build();
+		Config config = Config.newBuilder().admissionController(admissionController).build();
+		assertThat(config.getAdmissionController(), is(equalTo(admissionController)));
+	}
+
 	@Test
 	public void testBuildWithErrorsIsNull() {
 		Config config = Config.newBuilder().errorMessages(null).build();
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.regexp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link Alternations}.
+ *
+ * @author Marcel Overdijk
+ */
+public class AlternationsTests {
+
+	@Test
+	public void testIsPlain() {
+		assertThat(Alternations.isPlain("hello"), is(equalTo(true)));
+		assertThat(Alternations.isPlain("dark blue"), is(equalTo(true)));
+		assertThat(Alternations.isPlain(""), is(equalTo(false)));
+		assertThat(Alternations.isPlain(" hello"), is(equalTo(false)));
+		assertThat(Alternations.isPlain("c++"), is(equalTo(false)));
+		assertThat(Alternations.isPlain("@colors"), is(equalTo(false)));
+		assertThat(Alternations.isPlain("hello *"), is(equalTo(false)));
+		assertThat(Alternations.isPlain(Arrays.asList("hello", "hi")), is(equalTo(true)));
+		assertThat(Alternations.isPlain(Arrays.asList("hello", "#")), is(equalTo(false)));
+	}
+
+	@Test
+	public void testFactor() {
+		assertThat(Alternations.factor(Arrays.asList("hello", "help", "hi")), is(equalTo("h(?:el(?:lo|p)|i)")));
+		assertThat(Alternations.factor(Arrays.asList("red", "blue", "green")), is(equalTo("red|blue|green")));
+		assertThat(Alternations.factor(Arrays.asList("dark blue", "dark red", "blue")), is(equalTo("dark (?:blue|red)|blue")));
+		assertThat(Alternations.factor(Arrays.asList("a", "ab")), is(equalTo("a(?:|b)")));
+		assertThat(Alternations.factor(Arrays.asList("ab", "a")), is(equalTo("a(?:b|)")));
+		assertThat(Alternations.factor(Arrays.asList("abc", "a", "abd")), is(equalTo("a(?:bc||bd)")));
+		assertThat(Alternations.factor(Arrays.asList("hi", "hi")), is(equalTo("hi")));
+	}
+
+	@Test
+	public void testFactorPreservesPreference() {
+		List<String> branches = Arrays.asList("abc", "a", "abd", "b", "ab");
+		Pattern flat = Pattern.compile("^(abc|a|abd|b|ab)(.*)$");
+		Pattern factored = Pattern.compile("^(" + Alternations.factor(branches) + ")(.*)$");
+		for (String input : Arrays.asList("abcd", "abd", "ab", "a", "b", "bx", "x", "")) {
+			Matcher expected = flat.matcher(input);
+			Matcher actual = factored.matcher(input);
+			assertThat(actual.find(), is(equalTo(expected.find())));
+			if (expected.find(0)) {
+				actual.find(0);
+				assertThat(actual.group(1), is(equalTo(expected.group(1))));
+				assertThat(actual.group(2), is(equalTo(expected.group(2))));
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.regexp;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link BudgetedCharSequence}.
+ *
+ * @author Marcel Overdijk
+ */
+public class BudgetedCharSequenceTests {
+
+	private static final Pattern WILDCARDS = Pattern.compile("^(.+?) (.+?) (.+?) (.+?) (.+?) (.+?) (.+?) (.+?) zebra$");
+
+	@Test
+	public void testMatchWithinBudget() {
+		BudgetedCharSequence input = new BudgetedCharSequence("one two three four five six seven eight zebra", 100000);
+		Matcher matcher = WILDCARDS.matcher(input);
+		assertThat(matcher.find(), is(equalTo(true)));
+		assertThat(matcher.group(8), is(equalTo("eight")));
+		assertThat(input.getRemaining() > 0, is(equalTo(true)));
+	}
+
+	@Test
+	public void testCatastrophicBacktrackingExceedsBudget() {
+		// Backtracks over all ways to split the words between the wildcards.
+		StringBuilder message = new StringBuilder();
+		for (int i = 0; i < 60; i++) {
+			message.append("word ");
+		}
+		message.append("zebra crossing");
+		BudgetedCharSequence input = new BudgetedCharSequence(message, 100000);
+		try {
+			WILDCARDS.matcher(input).find();
+			fail("Expected BudgetExceededException");
+		} catch (BudgetedCharSequence.BudgetExceededException e) {
+			assertThat(input.getRemaining(), is(equalTo(0L)));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.regexp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TriggerAnalyzer}.
+ *
+ * @author Marcel Overdijk
+ */
+public class TriggerAnalyzerTests {
+
+	private static final Map<String, List<String>> NO_ARRAYS = Collections.emptyMap();
+
+	@Test
+	public void testCost() {
+		assertThat(TriggerAnalyzer.analyze("my name is *", NO_ARRAYS).getCost(), is(equalTo(11)));
+		assertThat(TriggerAnalyzer.analyze("i am # years old", NO_ARRAYS).getCost(), is(equalTo(4)));
+		assertThat(TriggerAnalyzer.analyze("what is [the] (color|colour) *", NO_ARRAYS).getCost(), is(equalTo(15)));
+		assertThat(TriggerAnalyzer.analyze("* and *", NO_ARRAYS).getCost(), is(equalTo(21)));
+		assertThat(TriggerAnalyzer.analyze("* [and] *", NO_ARRAYS).getCost(), is(equalTo(124)));
+		assertThat(TriggerAnalyzer.analyze("hello{weight=10}", NO_ARRAYS).getCost(), is(equalTo(1)));
+	}
+
+	@Test
+	public void testWarnings() {
+		assertThat(TriggerAnalyzer.analyze("my name is *", NO_ARRAYS).getWarnings().isEmpty(), is(equalTo(true)));
+		assertThat(TriggerAnalyzer.analyze("* *", NO_ARRAYS).getWarnings().get(0),
+				is(equalTo("adjacent wildcards make the regexp try every way to split the words between them")));
+		assertThat(TriggerAnalyzer.analyze("hello [*]", NO_ARRAYS).getWarnings().get(0),
+				is(equalTo("wildcards inside optionals nest a lazy quantifier inside a repeated group")));
+
+		List<String> colors = new ArrayList<>();
+		for (int i = 0; i < TriggerAnalyzer.LARGE_ALTERNATION; i++) {
+			colors.add("color_" + i);
+		}
+		Map<String, List<String>> arrays = new HashMap<>();
+		arrays.put("colors", colors);
+		List<String> warnings = TriggerAnalyzer.analyze("i like @colors", arrays).getWarnings();
+		assertThat(warnings.size(), is(equalTo(2)));
+		assertThat(warnings.get(0), is(equalTo("an alternation or array of 100 branches is tried branch by branch at every position")));
+		assertThat(warnings.get(1), is(equalTo("the trigger is expensive to match (cost 101)")));
+
+		// Plain text arrays are factored into a trie.
+		List<String> shades = new ArrayList<>();
+		for (int i = 0; i < TriggerAnalyzer.LARGE_ALTERNATION; i++) {
+			shades.add("shade" + i);
+		}
+		arrays.put("shades", shades);
+		assertThat(TriggerAnalyzer.analyze("i like @shades", arrays).getWarnings().isEmpty(), is(equalTo(true)));
+	}
+
+	@Test
+	public void testWords() {
+		assertThat(TriggerAnalyzer.analyze("my name is *", NO_ARRAYS).getWords(), is(equalTo(Arrays.asList("my", "name", "is"))));
+		assertThat(TriggerAnalyzer.analyze("* (hello|goodbye) *", NO_ARRAYS).getWords().isEmpty(), is(equalTo(true)));
+		assertThat(TriggerAnalyzer.analyze("[please] tell me about <bot name>", NO_ARRAYS).getWords(),
+				is(equalTo(Arrays.asList("me", "about"))));
+		assertThat(TriggerAnalyzer.analyze("i am # years old{weight=5}", NO_ARRAYS).getWords(),
+				is(equalTo(Arrays.asList("i", "am", "years", "old"))));
+		assertThat(TriggerAnalyzer.analyze("hello * hello", NO_ARRAYS).getWords(), is(equalTo(Arrays.asList("hello"))));
+	}
+
+	@Test
+	public void testOptimize() {
+		assertThat(TriggerAnalyzer.optimize("i am (\\d+?) years old"), is(equalTo("i am (\\d++) years old")));
+		assertThat(TriggerAnalyzer.optimize("call me ([^\\s\\d]+?)"), is(equalTo("call me ([^\\s\\d]++)")));
+		assertThat(TriggerAnalyzer.optimize("(\\d+?)th"), is(equalTo("(\\d+?)th")));
+		assertThat(TriggerAnalyzer.optimize("(.+?) is (.+?)"), is(equalTo("(.+?) is (.+?)")));
+		assertThat(TriggerAnalyzer.optimize("hello(?:(?:\\s|\\b)+there(?:\\s|\\b)+|(?:\\s|\\b)+)bot"),
+				is(equalTo("hello(?:(?:\\s+|\\b)there(?:\\s+|\\b)|(?:\\s+|\\b))bot")));
+	}
+}
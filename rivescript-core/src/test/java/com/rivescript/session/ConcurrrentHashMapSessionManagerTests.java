@@ -26,13 +26,16 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import static com.rivescript.session.SessionManager.HISTORY_SIZE;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for {@link ConcurrentHashMapSessionManager}.
@@ -125,6 +128,22 @@ public class ConcurrrentHashMapSessionManagerTests {
 		assertThat(sessionManager.getLastMatch(username), is(equalTo("foobar")));
 	}
 
+	@Test
+	public void testOpenCursor() {
+		for (int i = 0; i < 5; i++) {
+			sessionManager.init("user" + i);
+		}
+		Set<String> usernames = new HashSet<>();
+		try (SessionCursor cursor = sessionManager.openCursor(2)) {
+			while (cursor.hasNext()) {
+				Map<String, UserData> batch = cursor.next();
+				assertThat(batch.size() <= 2, is(equalTo(true)));
+				usernames.addAll(batch.keySet());
+			}
+		}
+		assertThat(usernames.size(), is(equalTo(5)));
+	}
+
 	@Test
 	public void testClear() {
 		sessionManager.init("user1");
@@ -147,4 +166,71 @@ public class ConcurrrentHashMapSessionManagerTests {
 		assertThat(sessionManager.get("user1"), is(equalTo(null)));
 		assertThat(sessionManager.get("user2"), is(equalTo(null)));
 	}
+
+	@Test
+	public void testFreezeAndThaw() {
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.addHistory(username, "input1", "reply1");
+		sessionManager.freeze(username);
+		sessionManager.set(username, "name", "Bob");
+		sessionManager.addHistory(username, "input2", "reply2");
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Bob")));
+
+		sessionManager.thaw(username, ThawAction.KEEP);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.getHistory(username).getInput(0), is(equalTo("input1")));
+		sessionManager.set(username, "name", "Bob");
+
+		sessionManager.thaw(username, ThawAction.THAW);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		sessionManager.set(username, "name", "Bob");
+		sessionManager.thaw(username, ThawAction.THAW);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Bob")));
+	}
+
+	@Test
+	public void testFreezeWhileChanging() throws InterruptedException {
+		sessionManager.init(username);
+		Thread writer = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				for (int i = 0; i < 1000; i++) {
+					sessionManager.set(username, "var" + i, String.valueOf(i));
+					sessionManager.addHistory(username, String.valueOf(i), "reply");
+				}
+			}
+		});
+		writer.start();
+		while (writer.isAlive()) {
+			sessionManager.freeze(username);
+			sessionManager.get(username).getVariables().size();
+		}
+		writer.join();
+
+		// No change may be lost to a copy taken concurrently.
+		for (int i = 0; i < 1000; i++) {
+			assertThat(sessionManager.get(username, "var" + i), is(equalTo(String.valueOf(i))));
+		}
+		assertThat(sessionManager.getHistory(username).getInput(0), is(equalTo("999")));
+		assertThat(sessionManager.getHistory(username).getInput(1), is(equalTo("998")));
+	}
+
+	@Test
+	public void testGettersAreReadOnly() {
+		sessionManager.set(username, "name", "Aiden");
+		try {
+			sessionManager.get(username).getVariables().put("name", "Bob");
+			fail("Expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			sessionManager.getHistory(username).getInput().set(0, "input");
+			fail("Expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+	}
 }
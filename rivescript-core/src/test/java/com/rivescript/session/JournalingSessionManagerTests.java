@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import com.rivescript.RiveScriptException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link JournalingSessionManager}.
+ *
+ * @author Marcel Overdijk
+ */
+public class JournalingSessionManagerTests {
+
+	private File directory;
+
+	private String username = "local-user";
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("rivescript-sessions").toFile();
+		this.directory.deleteOnExit();
+	}
+
+	@Test
+	public void testRecoverFromJournal() throws IOException {
+		JournalingSessionManager sessionManager = new JournalingSessionManager(directory);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.addHistory(username, "input1", "reply1");
+		sessionManager.setLastMatch(username, "my name is *");
+		sessionManager.set("user2", "foo", "bar");
+		sessionManager.clear("user2");
+		sessionManager.close();
+
+		sessionManager = new JournalingSessionManager(directory);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.get(username, "topic"), is(equalTo("random")));
+		assertThat(sessionManager.getHistory(username).getInput(0), is(equalTo("input1")));
+		assertThat(sessionManager.getHistory(username).getReply(0), is(equalTo("reply1")));
+		assertThat(sessionManager.getLastMatch(username), is(equalTo("my name is *")));
+		assertThat(sessionManager.get("user2"), is(equalTo(null)));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testRecoverFromSnapshotAndJournal() throws IOException {
+		JournalingSessionManager sessionManager = new JournalingSessionManager(directory);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.addHistory(username, "input1", "reply1");
+		sessionManager.compact();
+		sessionManager.addHistory(username, "input2", "reply2");
+		sessionManager.close();
+
+		sessionManager = new JournalingSessionManager(directory);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.getHistory(username).getInput(0), is(equalTo("input2")));
+		assertThat(sessionManager.getHistory(username).getInput(1), is(equalTo("input1")));
+		assertThat(sessionManager.getHistory(username).getInput(2), is(equalTo("undefined")));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testTruncatedSnapshot() throws IOException {
+		JournalingSessionManager sessionManager = new JournalingSessionManager(directory);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.compact();
+		sessionManager.close();
+
+		File snapshot = new File(directory, JournalingSessionManager.SNAPSHOT_FILE);
+		try (RandomAccessFile file = new RandomAccessFile(snapshot, "rw")) {
+			file.setLength(file.length() - 10);
+		}
+		try {
+			new JournalingSessionManager(directory);
+			fail("Expected RiveScriptException");
+		} catch (RiveScriptException e) {
+			assertThat(e.getCause().getMessage(), is(equalTo("Truncated or corrupt session snapshot '" + snapshot + "'")));
+		}
+	}
+
+	@Test
+	public void testDiscardTornRecord() throws IOException {
+		JournalingSessionManager sessionManager = new JournalingSessionManager(directory);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.close();
+
+		// Simulate a crash in the middle of a write.
+		try (FileOutputStream out = new FileOutputStream(new File(directory, JournalingSessionManager.JOURNAL_FILE), true)) {
+			out.write(new byte[] {0, 0, 0, 42, 1, 2, 3});
+		}
+
+		sessionManager = new JournalingSessionManager(directory);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		sessionManager.set(username, "name", "Bob");
+		sessionManager.close();
+
+		sessionManager = new JournalingSessionManager(directory);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Bob")));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testConcurrentCommitsAndCompactions() throws IOException, InterruptedException {
+		// Commit every millisecond and compact often, while the writers flush themselves too.
+		final JournalingSessionManager sessionManager = new JournalingSessionManager(directory, 1, 1024);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final String user = "user" + t;
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int i = 0; i < 200; i++) {
+						sessionManager.set(user, "counter", String.valueOf(i));
+						sessionManager.addHistory(user, String.valueOf(i), "reply");
+						if (i % 10 == 0) {
+							sessionManager.flush();
+						}
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		sessionManager.close();
+
+		JournalingSessionManager recovered = new JournalingSessionManager(directory);
+		for (int t = 0; t < 4; t++) {
+			assertThat(recovered.get("user" + t, "counter"), is(equalTo("199")));
+			assertThat(recovered.getHistory("user" + t).getInput(0), is(equalTo("199")));
+			assertThat(recovered.getHistory("user" + t).getInput(1), is(equalTo("198")));
+		}
+		recovered.close();
+	}
+}
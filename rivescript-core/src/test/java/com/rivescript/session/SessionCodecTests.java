@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link SessionCodec}.
+ *
+ * @author Marcel Overdijk
+ */
+public class SessionCodecTests {
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		UserData data = new UserData();
+		data.setVariable("name", "Aiden");
+		data.setVariable("nickname", null);
+		data.setVariable("city", "Zürich");
+		data.setLastMatch("my name is *");
+		data.getHistory().set(0, "hello", "hi there");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SessionCodec.Encoder encoder = new SessionCodec.Encoder(out);
+		encoder.write("user1", data);
+		encoder.write("user2", new UserData());
+		encoder.finish();
+
+		SessionCodec.Decoder decoder = new SessionCodec.Decoder(new ByteArrayInputStream(out.toByteArray()));
+		Map.Entry<String, UserData> entry = decoder.read();
+		assertThat(entry.getKey(), is(equalTo("user1")));
+		assertThat(entry.getValue(), is(equalTo(data)));
+		entry = decoder.read();
+		assertThat(entry.getKey(), is(equalTo("user2")));
+		assertThat(entry.getValue(), is(equalTo(new UserData())));
+		assertThat(decoder.read(), is(equalTo(null)));
+	}
+
+	@Test
+	public void testDeduplicatesVariableNames() throws IOException {
+		UserData data = new UserData();
+		data.setVariable("a-rather-long-variable-name", "1");
+
+		ByteArrayOutputStream once = new ByteArrayOutputStream();
+		SessionCodec.Encoder encoder = new SessionCodec.Encoder(once);
+		encoder.write("user", data);
+		encoder.finish();
+
+		ByteArrayOutputStream twice = new ByteArrayOutputStream();
+		encoder = new SessionCodec.Encoder(twice);
+		encoder.write("user", data);
+		encoder.write("user", data);
+		encoder.finish();
+
+		int recordSize = once.size() - 6; // magic, version and end marker
+		assertThat(twice.size() - once.size() < recordSize - "a-rather-long-variable-name".length(), is(equalTo(true)));
+	}
+
+	@Test
+	public void testExportImport() throws IOException {
+		ConcurrentHashMapSessionManager source = new ConcurrentHashMapSessionManager();
+		source.set("user1", "name", "Aiden");
+		source.addHistory("user1", "input", "reply");
+		source.setLastMatch("user1", "trigger");
+		source.set("user2", "name", "Bob");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		source.exportSessions(out);
+
+		WriteBehindSessionManager target = new WriteBehindSessionManager(new ConcurrentHashMapSessionManager());
+		target.importSessions(new ByteArrayInputStream(out.toByteArray()));
+		assertThat(target.get("user1"), is(equalTo(source.get("user1"))));
+		assertThat(target.get("user2"), is(equalTo(source.get("user2"))));
+		assertThat(target.drainDirty().size(), is(equalTo(2)));
+	}
+
+	@Test
+	public void testExportImportAnySessionManager() throws IOException {
+		ConcurrentHashMapSessionManager source = new ConcurrentHashMapSessionManager();
+		source.set("user1", "name", "Aiden");
+		source.addHistory("user1", "input", "reply");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		SessionCodec.exportSessions(source, out);
+
+		ConcurrentHashMapSessionManager target = new ConcurrentHashMapSessionManager();
+		SessionCodec.importSessions(target, new ByteArrayInputStream(out.toByteArray()));
+		assertThat(target.get("user1"), is(equalTo(source.get("user1"))));
+	}
+
+	@Test
+	public void testInvalidStream() {
+		try {
+			new ConcurrentHashMapSessionManager().importSessions(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}));
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertThat(e.getMessage(), is(equalTo("Not a RiveScript session stream")));
+		}
+	}
+
+	@Test
+	public void testCorruptStringLength() {
+		// A user record whose username claims to be Integer.MAX_VALUE - 1 bytes long.
+		byte[] stream = new byte[] {'R', 'S', 'S', 'B', 1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+		try {
+			new SessionCodec.Decoder(new ByteArrayInputStream(stream)).read();
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertThat(e.getMessage(), is(equalTo("Corrupt session stream")));
+		}
+	}
+}
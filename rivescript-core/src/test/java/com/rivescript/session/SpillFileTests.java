@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link SpillFile}.
+ *
+ * @author Marcel Overdijk
+ */
+public class SpillFileTests {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		File directory = Files.createTempDirectory("rivescript-sessions").toFile();
+		directory.deleteOnExit();
+		this.file = new File(directory, TieredSessionManager.SPILL_FILE);
+		this.file.deleteOnExit();
+	}
+
+	@Test
+	public void testPutCompactsReplacedRecords() throws IOException {
+		SpillFile spillFile = new SpillFile(file, 0);
+		UserData data = new UserData();
+		data.setVariable("name", "Aiden");
+		spillFile.put("local-user", data);
+		long recordSize = file.length();
+
+		// Replacing the same session over and over must not grow the file without bound.
+		for (int i = 0; i < 100; i++) {
+			data.setVariable("counter", String.valueOf(i));
+			spillFile.put("local-user", data);
+		}
+		assertThat(file.length() < 4 * recordSize, is(equalTo(true)));
+		assertThat(spillFile.size(), is(equalTo(1)));
+		assertThat(spillFile.get("local-user").getVariable("counter"), is(equalTo("99")));
+		spillFile.close();
+
+		SpillFile reopened = new SpillFile(file, 0);
+		assertThat(reopened.get("local-user").getVariable("counter"), is(equalTo("99")));
+		reopened.close();
+	}
+}
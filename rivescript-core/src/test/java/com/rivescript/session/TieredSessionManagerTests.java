@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link TieredSessionManager}.
+ *
+ * @author Marcel Overdijk
+ */
+public class TieredSessionManagerTests {
+
+	private File directory;
+
+	private String username = "local-user";
+
+	@Before
+	public void setUp() throws IOException {
+		this.directory = Files.createTempDirectory("rivescript-sessions").toFile();
+		this.directory.deleteOnExit();
+	}
+
+	@Test
+	public void testSpillAndPromote() throws IOException {
+		TieredSessionManager sessionManager = new TieredSessionManager(directory, 0, Long.MAX_VALUE);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.addHistory(username, "input1", "reply1");
+		sessionManager.setLastMatch(username, "my name is *");
+		assertThat(sessionManager.spillIdle(), is(equalTo(1)));
+		assertThat(sessionManager.getHotSize(), is(equalTo(0)));
+		assertThat(sessionManager.getColdSize(), is(equalTo(1)));
+
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.getHotSize(), is(equalTo(1)));
+		assertThat(sessionManager.getColdSize(), is(equalTo(0)));
+		assertThat(sessionManager.getHistory(username).getInput(0), is(equalTo("input1")));
+		assertThat(sessionManager.getLastMatch(username), is(equalTo("my name is *")));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testFrozenUsersAreNotSpilled() throws IOException {
+		TieredSessionManager sessionManager = new TieredSessionManager(directory, 0, Long.MAX_VALUE);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.freeze(username);
+		assertThat(sessionManager.spillIdle(), is(equalTo(0)));
+		sessionManager.set(username, "name", "Bob");
+		sessionManager.thaw(username, ThawAction.THAW);
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.spillIdle(), is(equalTo(1)));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testUsersAccessedDuringSweepAreNotSpilled() throws IOException {
+		TieredSessionManager sessionManager = new TieredSessionManager(directory, 0, Long.MAX_VALUE);
+		sessionManager.set(username, "name", "Aiden");
+
+		// A sweep which saw the user as idle before it was accessed again must leave it in the hot tier.
+		assertThat(sessionManager.spill(username, false, System.currentTimeMillis() - 60000), is(equalTo(false)));
+		assertThat(sessionManager.getHotSize(), is(equalTo(1)));
+		assertThat(sessionManager.spill(username, false, System.currentTimeMillis()), is(equalTo(true)));
+		assertThat(sessionManager.getColdSize(), is(equalTo(1)));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testClear() throws IOException {
+		TieredSessionManager sessionManager = new TieredSessionManager(directory, 0, Long.MAX_VALUE);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.spillIdle();
+		sessionManager.clear(username);
+		assertThat(sessionManager.get(username), is(equalTo(null)));
+		assertThat(sessionManager.getColdSize(), is(equalTo(0)));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		TieredSessionManager sessionManager = new TieredSessionManager(directory);
+		sessionManager.set(username, "name", "Aiden");
+		sessionManager.set("user2", "foo", "bar");
+		sessionManager.clear("user2");
+		sessionManager.close();
+
+		sessionManager = new TieredSessionManager(directory);
+		assertThat(sessionManager.getColdSize(), is(equalTo(1)));
+		assertThat(sessionManager.get(username, "name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.get(username, "topic"), is(equalTo("random")));
+		assertThat(sessionManager.get("user2"), is(equalTo(null)));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testOpenCursorIncludesSpilledUsers() throws IOException {
+		TieredSessionManager sessionManager = new TieredSessionManager(directory, 0, Long.MAX_VALUE);
+		sessionManager.set("user1", "name", "Aiden");
+		sessionManager.spillIdle();
+		sessionManager.set("user2", "name", "Bob");
+		Map<String, UserData> all = new HashMap<>();
+		try (SessionCursor cursor = sessionManager.openCursor(1)) {
+			while (cursor.hasNext()) {
+				all.putAll(cursor.next());
+			}
+		}
+		assertThat(all.size(), is(equalTo(2)));
+		assertThat(all.get("user1").getVariable("name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.getHotSize(), is(equalTo(1)));
+		sessionManager.close();
+	}
+}
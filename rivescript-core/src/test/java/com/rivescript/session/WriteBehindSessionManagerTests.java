@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.session;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link WriteBehindSessionManager}.
+ *
+ * @author Marcel Overdijk
+ */
+public class WriteBehindSessionManagerTests {
+
+	private WriteBehindSessionManager sessionManager;
+
+	private Map<String, UserData> written;
+
+	private Set<String> deleted;
+
+	private int writes;
+
+	@Before
+	public void setUp() {
+		this.written = new HashMap<>();
+		this.deleted = new HashSet<>();
+		this.writes = 0;
+		this.sessionManager = new WriteBehindSessionManager(new ConcurrentHashMapSessionManager(), new SessionWriter() {
+
+			@Override
+			public void write(Map<String, UserData> updated, Set<String> deleted) {
+				writes++;
+				written.putAll(updated);
+				WriteBehindSessionManagerTests.this.deleted.addAll(deleted);
+			}
+		}, Long.MAX_VALUE);
+	}
+
+	@Test
+	public void testDrainDirty() {
+		WriteBehindSessionManager sessionManager = new WriteBehindSessionManager(new ConcurrentHashMapSessionManager());
+		sessionManager.set("user1", "foo", "bar");
+		sessionManager.addHistory("user2", "input", "reply");
+		assertThat(sessionManager.drainDirty(), is(equalTo((Set<String>) new HashSet<>(Arrays.asList("user1", "user2")))));
+		assertThat(sessionManager.drainDirty().size(), is(equalTo(0)));
+		assertThat(sessionManager.getVersion("user1"), is(equalTo(0L)));
+	}
+
+	@Test
+	public void testFlushCoalescesUpdates() {
+		sessionManager.set("user1", "foo", "bar");
+		sessionManager.set("user1", "foo", "baz");
+		sessionManager.addHistory("user1", "input", "reply");
+		sessionManager.setLastMatch("user1", "trigger");
+		sessionManager.flush();
+		assertThat(writes, is(equalTo(1)));
+		assertThat(written.size(), is(equalTo(1)));
+		assertThat(written.get("user1").getVariable("foo"), is(equalTo("baz")));
+		assertThat(written.get("user1").getHistory().getInput(0), is(equalTo("input")));
+
+		// Nothing changed, so nothing to write.
+		sessionManager.flush();
+		assertThat(writes, is(equalTo(1)));
+	}
+
+	@Test
+	public void testFlushDeleted() {
+		sessionManager.set("user1", "foo", "bar");
+		sessionManager.flush();
+		sessionManager.clear("user1");
+		sessionManager.close();
+		assertThat(deleted.contains("user1"), is(equalTo(true)));
+	}
+
+	@Test
+	public void testConcurrentChangesAndFlushes() throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			final String user = "user" + t;
+			Thread thread = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int i = 0; i < 200; i++) {
+						sessionManager.set(user, "counter", String.valueOf(i));
+						sessionManager.addHistory(user, String.valueOf(i), "reply");
+					}
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			while (thread.isAlive()) {
+				sessionManager.flush();
+			}
+			thread.join();
+		}
+		sessionManager.close();
+
+		for (int t = 0; t < 4; t++) {
+			assertThat(written.get("user" + t).getVariable("counter"), is(equalTo("199")));
+			assertThat(written.get("user" + t).getHistory().getInput(0), is(equalTo("199")));
+			assertThat(written.get("user" + t).getHistory().getInput(1), is(equalTo("198")));
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link BoundedCache}.
+ *
+ * @author Marcel Overdijk
+ */
+public class BoundedCacheTests {
+
+	@Test
+	public void testGetAndPut() {
+		BoundedCache<String, String> cache = new BoundedCache<>(10);
+		assertThat(cache.get("hello"), is(equalTo(null)));
+		cache.put("hello", "world");
+		assertThat(cache.get("hello"), is(equalTo("world")));
+		assertThat(cache.size(), is(equalTo(1)));
+		assertThat(cache.getHitCount(), is(equalTo(1L)));
+		assertThat(cache.getMissCount(), is(equalTo(1L)));
+		cache.clear();
+		assertThat(cache.get("hello"), is(equalTo(null)));
+		assertThat(cache.size(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		BoundedCache<Integer, String> cache = new BoundedCache<>(2, 1);
+		cache.put(1, "one");
+		cache.put(2, "two");
+		cache.get(1);
+		cache.put(3, "three");
+		assertThat(cache.get(1), is(equalTo("one")));
+		assertThat(cache.get(2), is(equalTo(null)));
+		assertThat(cache.get(3), is(equalTo("three")));
+	}
+
+	@Test
+	public void testBounded() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(100);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+		}
+		assertThat(cache.size() <= 100, is(equalTo(true)));
+	}
+
+	@Test
+	public void testInvalidMaximumSize() {
+		try {
+			new BoundedCache<String, String>(0);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage(), is(equalTo("Maximum size must be positive")));
+		}
+	}
+}
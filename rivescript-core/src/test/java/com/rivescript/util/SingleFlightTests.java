@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.rivescript.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link SingleFlight}.
+ *
+ * @author Marcel Overdijk
+ */
+public class SingleFlightTests {
+
+	@Test
+	public void testFirstJoinLeads() {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		SingleFlight.Call<String> leader = flights.join("hello");
+		SingleFlight.Call<String> follower = flights.join("hello");
+		SingleFlight.Call<String> other = flights.join("world");
+		assertThat(leader.isLeader(), is(equalTo(true)));
+		assertThat(follower.isLeader(), is(equalTo(false)));
+		assertThat(other.isLeader(), is(equalTo(true)));
+		assertThat(flights.size(), is(equalTo(2)));
+		assertThat(flights.getCoalescedCount(), is(equalTo(1L)));
+
+		flights.leave("hello", leader);
+		assertThat(flights.join("hello").isLeader(), is(equalTo(true)));
+	}
+
+	@Test
+	public void testFollowerGetsResult() throws InterruptedException, ExecutionException {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		SingleFlight.Call<String> leader = flights.join("hello");
+		final SingleFlight.Call<String> follower = flights.join("hello");
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<String> result = executor.submit(new Callable<String>() {
+
+			@Override
+			public String call() throws InterruptedException {
+				follower.await(10, TimeUnit.SECONDS);
+				return follower.getResult();
+			}
+		});
+		leader.complete("world");
+		leader.complete("ignored");
+		flights.leave("hello", leader);
+		assertThat(result.get(), is(equalTo("world")));
+		assertThat(flights.size(), is(equalTo(0)));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testLeaveWithoutResult() throws InterruptedException {
+		SingleFlight<String, String> flights = new SingleFlight<>();
+		SingleFlight.Call<String> leader = flights.join("hello");
+		SingleFlight.Call<String> follower = flights.join("hello");
+		assertThat(follower.await(0, TimeUnit.SECONDS), is(equalTo(false)));
+		flights.leave("hello", leader);
+		assertThat(follower.await(0, TimeUnit.SECONDS), is(equalTo(true)));
+		assertThat(follower.getResult(), is(equalTo(null)));
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link StringTrie}.
+ *
+ * @author Marcel Overdijk
+ */
+public class StringTrieTests {
+
+	@Test
+	public void testFind() {
+		StringTrie trie = new StringTrie(Arrays.asList("red", "dark blue", "blue", "red", "green"));
+		assertThat(trie.find("my dark blue shirt").toString(), is(equalTo("{1, 2}")));
+		assertThat(trie.find("tired").toString(), is(equalTo("{0}")));
+		assertThat(trie.find("pink").isEmpty(), is(equalTo(true)));
+		assertThat(trie.find("").isEmpty(), is(equalTo(true)));
+	}
+
+	@Test
+	public void testFindReturnsIndexesInOrder() {
+		StringTrie trie = new StringTrie(Arrays.asList("c", "b", "a"));
+		BitSet found = trie.find("abc");
+		assertThat(found.cardinality(), is(equalTo(3)));
+		assertThat(found.nextSetBit(0), is(equalTo(0)));
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link Tokens}.
+ *
+ * @author Marcel Overdijk
+ */
+public class TokensTests {
+
+	@Test
+	public void testSplit() {
+		assertThat(new Tokens("my  name is bob").size(), is(equalTo(4)));
+		assertThat(new Tokens("").size(), is(equalTo(0)));
+		assertThat(new Tokens("   ").size(), is(equalTo(0)));
+		assertThat(new Tokens(" hi ").size(), is(equalTo(1)));
+	}
+
+	@Test
+	public void testIds() {
+		Vocabulary vocabulary = new Vocabulary(Arrays.asList("what", "is", "name"));
+		Tokens tokens = new Tokens("what is your name", vocabulary);
+		assertThat(tokens.getId(0), is(equalTo(0)));
+		assertThat(tokens.getId(2), is(equalTo(-1)));
+		assertThat(tokens.containsAll(new int[] {2, 0}), is(equalTo(true)));
+		assertThat(tokens.containsAll(new int[] {2, -1}), is(equalTo(false)));
+		assertThat(new Tokens("who are you", vocabulary).containsAll(new int[] {0}), is(equalTo(false)));
+		assertThat(new Tokens("who are you").containsAll(new int[0]), is(equalTo(true)));
+	}
+}
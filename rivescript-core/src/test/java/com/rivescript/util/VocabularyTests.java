@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link Vocabulary}.
+ *
+ * @author Marcel Overdijk
+ */
+public class VocabularyTests {
+
+	@Test
+	public void testIds() {
+		Vocabulary vocabulary = new Vocabulary(Arrays.asList("hello", "world", "hello", "bot"));
+		assertThat(vocabulary.size(), is(equalTo(3)));
+		assertThat(vocabulary.getId("hello"), is(equalTo(0)));
+		assertThat(vocabulary.getId("world"), is(equalTo(1)));
+		assertThat(vocabulary.getId("bot"), is(equalTo(2)));
+		assertThat(vocabulary.getId("robot"), is(equalTo(-1)));
+		assertThat(vocabulary.getWord(1), is(equalTo("world")));
+		assertThat(vocabulary.getId("say hello there", 4, 9), is(equalTo(0)));
+		assertThat(Arrays.toString(vocabulary.getIds(Arrays.asList("bot", "nope"))), is(equalTo("[2, -1]")));
+	}
+
+	@Test
+	public void testEmpty() {
+		assertThat(Vocabulary.EMPTY.size(), is(equalTo(0)));
+		assertThat(Vocabulary.EMPTY.getId("hello"), is(equalTo(-1)));
+	}
+
+	@Test
+	public void testManyWords() {
+		List<String> words = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			words.add("word" + i);
+		}
+		Vocabulary vocabulary = new Vocabulary(words);
+		for (int i = 0; i < 10000; i++) {
+			assertThat(vocabulary.getId("word" + i), is(equalTo(i)));
+			assertThat(vocabulary.getId("other" + i), is(equalTo(-1)));
+		}
+	}
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.loom;
+
+import com.rivescript.RiveScriptException;
+import com.rivescript.session.CursorSessionManager;
+import com.rivescript.session.ExportableSessionManager;
+import com.rivescript.session.History;
+import com.rivescript.session.SessionCodec;
+import com.rivescript.session.SessionCursor;
+import com.rivescript.session.SessionCursors;
+import com.rivescript.session.SessionManager;
+import com.rivescript.session.ThawAction;
+import com.rivescript.session.UserData;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link SessionManager} decorator which runs the calls of virtual threads to the decorated session manager on a bounded pool of
+ * platform threads.
+ * <p>
+ * Session managers backed by I/O libraries which block inside {@code synchronized} blocks or native code (e.g. many JDBC drivers)
+ * pin the carrier thread of a virtual thread for the duration of the call. With this decorator the virtual thread only parks while
+ * waiting for the platform thread, so its carrier thread is released. Calls from platform threads are passed through directly.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class OffloadingSessionManager implements SessionManager, CursorSessionManager, ExportableSessionManager, Closeable {
+
+	private final SessionManager delegate;
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a new {@link OffloadingSessionManager} using a pool of one platform thread per available processor.
+	 *
+	 * @param delegate the session manager to decorate
+	 */
+	public OffloadingSessionManager(SessionManager delegate) {
+		this(delegate, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new {@link OffloadingSessionManager} using a pool of platform threads of the given size.
+	 *
+	 * @param delegate the session manager to decorate
+	 * @param threads  the number of platform threads
+	 */
+	public OffloadingSessionManager(SessionManager delegate, int threads) {
+		this.delegate = delegate;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "rivescript-session-io-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	@Override
+	public UserData init(final String username) {
+		return offload(new Callable<UserData>() {
+
+			@Override
+			public UserData call() {
+				return delegate.init(username);
+			}
+		});
+	}
+
+	@Override
+	public void set(final String username, final String name, final String value) {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.set(username, name, value);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void set(final String username, final Map<String, String> vars) {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.set(username, vars);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void addHistory(final String username, final String input, final String reply) {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.addHistory(username, input, reply);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void setLastMatch(final String username, final String trigger) {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.setLastMatch(username, trigger);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public String get(final String username, final String name) {
+		return offload(new Callable<String>() {
+
+			@Override
+			public String call() {
+				return delegate.get(username, name);
+			}
+		});
+	}
+
+	@Override
+	public UserData get(final String username) {
+		return offload(new Callable<UserData>() {
+
+			@Override
+			public UserData call() {
+				return delegate.get(username);
+			}
+		});
+	}
+
+	@Override
+	public Map<String, UserData> getAll() {
+		return offload(new Callable<Map<String, UserData>>() {
+
+			@Override
+			public Map<String, UserData> call() {
+				return delegate.getAll();
+			}
+		});
+	}
+
+	@Override
+	public SessionCursor openCursor(final int batchSize) {
+		return offload(new Callable<SessionCursor>() {
+
+			@Override
+			public SessionCursor call() {
+				return SessionCursors.open(delegate, batchSize);
+			}
+		});
+	}
+
+	@Override
+	public String getLastMatch(final String username) {
+		return offload(new Callable<String>() {
+
+			@Override
+			public String call() {
+				return delegate.getLastMatch(username);
+			}
+		});
+	}
+
+	@Override
+	public History getHistory(final String username) {
+		return offload(new Callable<History>() {
+
+			@Override
+			public History call() {
+				return delegate.getHistory(username);
+			}
+		});
+	}
+
+	@Override
+	public void clear(final String username) {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.clear(username);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void clearAll() {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.clearAll();
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void freeze(final String username) {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.freeze(username);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void thaw(final String username, final ThawAction action) {
+		offload(new Callable<Void>() {
+
+			@Override
+			public Void call() {
+				delegate.thaw(username, action);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void exportSessions(final OutputStream out) throws IOException {
+		offloadIO(new Callable<Void>() {
+
+			@Override
+			public Void call() throws IOException {
+				SessionCodec.exportSessions(delegate, out);
+				return null;
+			}
+		});
+	}
+
+	@Override
+	public void importSessions(final InputStream in) throws IOException {
+		offloadIO(new Callable<Void>() {
+
+			@Override
+			public Void call() throws IOException {
+				SessionCodec.importSessions(delegate, in);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Shuts down the platform thread pool.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Runs a call on the platform thread pool if the current thread is virtual, otherwise runs it directly.
+	 */
+	private <T> T offload(Callable<T> call) {
+		try {
+			return offloadIO(call);
+		} catch (IOException e) {
+			throw new RiveScriptException("Unexpected I/O error in session manager", e);
+		}
+	}
+
+	/**
+	 * Like {@link #offload(Callable)}, but passes {@link IOException}s of the call on to the caller.
+	 * <p>
+	 * If the calling virtual thread is interrupted while waiting, a call which has not started yet is cancelled. A call which is
+	 * already running on the platform thread is not interrupted, as that could leave the decorated session manager in an
+	 * inconsistent state (e.g. interruptible channels are closed), so its change may still be applied after this method has thrown.
+	 */
+	private <T> T offloadIO(Callable<T> call) throws IOException {
+		Future<T> future = null;
+		try {
+			if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+				return call.call();
+			}
+			future = executor.submit(call);
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(false);
+			Thread.currentThread().interrupt();
+			throw new RiveScriptException("Interrupted while waiting for session manager", e);
+		} catch (ExecutionException e) {
+			return rethrow(e.getCause());
+		} catch (RuntimeException | IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RiveScriptException("Error in session manager", e);
+		}
+	}
+
+	private static <T> T rethrow(Throwable cause) throws IOException {
+		if (cause instanceof IOException) {
+			throw (IOException) cause;
+		} else if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		} else if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		throw new RiveScriptException("Error in session manager", cause);
+	}
+}
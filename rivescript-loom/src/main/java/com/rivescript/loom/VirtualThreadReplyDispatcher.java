@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.loom;
+
+import com.rivescript.ReplyDispatcher;
+import com.rivescript.RiveScript;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A {@link ReplyDispatcher} running each user's mailbox on its own virtual thread.
+ * <p>
+ * Blocking object macros (e.g. calling a downstream service) only park the virtual thread, so a single node can serve a very large
+ * number of concurrent conversations without a platform thread per conversation. Every user gets a mailbox of its own, created on
+ * demand and removed when idle, so a user blocked on a slow macro never holds up another user. Replies of the same user are still
+ * processed strictly in order.
+ * <p>
+ * Requires Java 21 or later.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class VirtualThreadReplyDispatcher extends ReplyDispatcher {
+
+	private final ExecutorService executor;
+
+	/**
+	 * Creates a new {@link VirtualThreadReplyDispatcher}.
+	 *
+	 * @param rs the RiveScript instance
+	 * @throws UnsupportedOperationException in case virtual threads are not supported
+	 */
+	public VirtualThreadReplyDispatcher(RiveScript rs) {
+		this(rs, VirtualThreads.newExecutor("rivescript-reply-"));
+	}
+
+	private VirtualThreadReplyDispatcher(RiveScript rs, ExecutorService executor) {
+		super(rs, executor, true);
+		this.executor = executor;
+	}
+
+	/**
+	 * Shuts down the virtual thread executor. Already submitted tasks are still processed.
+	 */
+	@Override
+	public void close() {
+		super.close();
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2016-2017 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.loom;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Utility methods for virtual threads.
+ * <p>
+ * Virtual threads are only available on Java 21 and later. As RiveScript itself targets Java 7, the virtual thread API is accessed
+ * reflectively, and {@link #isSupported()} can be used to check whether the running JVM supports them.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public final class VirtualThreads {
+
+	private static final Method OF_VIRTUAL;
+	private static final Method IS_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static {
+		Method ofVirtual;
+		Method isVirtual;
+		Method builderName;
+		Method builderFactory;
+		Method newThreadPerTaskExecutor;
+		try {
+			// Look up the builder methods on the public interface, as the implementation class is not accessible.
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			isVirtual = Thread.class.getMethod("isVirtual");
+			builderName = builder.getMethod("name", String.class, long.class);
+			builderFactory = builder.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			ofVirtual = null;
+			isVirtual = null;
+			builderName = null;
+			builderFactory = null;
+			newThreadPerTaskExecutor = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		IS_VIRTUAL = isVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Returns whether the running JVM supports virtual threads.
+	 *
+	 * @return whether virtual threads are supported
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Returns whether the given thread is a virtual thread.
+	 *
+	 * @param thread the thread
+	 * @return whether the thread is virtual, always {@code false} if virtual threads are not supported
+	 */
+	public static boolean isVirtual(Thread thread) {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+		return (Boolean) invoke(IS_VIRTUAL, thread);
+	}
+
+	/**
+	 * Creates a {@link ThreadFactory} creating virtual threads named with the given prefix followed by a counter.
+	 *
+	 * @param prefix the thread name prefix
+	 * @return the thread factory
+	 * @throws UnsupportedOperationException in case virtual threads are not supported
+	 */
+	public static ThreadFactory newThreadFactory(String prefix) {
+		checkSupported();
+		Object builder = invoke(OF_VIRTUAL, null);
+		builder = invoke(BUILDER_NAME, builder, prefix, 1L);
+		return (ThreadFactory) invoke(BUILDER_FACTORY, builder);
+	}
+
+	/**
+	 * Creates an {@link ExecutorService} which starts a new virtual thread for each task.
+	 *
+	 * @param prefix the thread name prefix
+	 * @return the executor service
+	 * @throws UnsupportedOperationException in case virtual threads are not supported
+	 */
+	public static ExecutorService newExecutor(String prefix) {
+		return (ExecutorService) invoke(NEW_THREAD_PER_TASK_EXECUTOR, null, newThreadFactory(prefix));
+	}
+
+	private static void checkSupported() {
+		if (!isSupported()) {
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or later, running on Java "
+					+ System.getProperty("java.version"));
+		}
+	}
+
+	private static Object invoke(Method method, Object target, Object... args) {
+		try {
+			return method.invoke(target, args);
+		} catch (IllegalAccessException e) {
+			throw new UnsupportedOperationException("Cannot access " + method, e);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new UnsupportedOperationException("Error invoking " + method, e.getCause());
+		}
+	}
+}
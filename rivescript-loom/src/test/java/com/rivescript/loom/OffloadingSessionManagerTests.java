@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.loom;
+
+import com.rivescript.RiveScriptException;
+import com.rivescript.session.ConcurrentHashMapSessionManager;
+import com.rivescript.session.ThawAction;
+import com.rivescript.session.UserData;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link OffloadingSessionManager}.
+ *
+ * @author Marcel Overdijk
+ */
+public class OffloadingSessionManagerTests {
+
+	@Test
+	public void testDelegates() {
+		OffloadingSessionManager sessionManager = new OffloadingSessionManager(new ConcurrentHashMapSessionManager(), 1);
+		sessionManager.set("local-user", "name", "Aiden");
+		sessionManager.addHistory("local-user", "input1", "reply1");
+		sessionManager.freeze("local-user");
+		sessionManager.set("local-user", "name", "Bob");
+		sessionManager.thaw("local-user", ThawAction.THAW);
+		assertThat(sessionManager.get("local-user", "name"), is(equalTo("Aiden")));
+		assertThat(sessionManager.getHistory("local-user").getInput(0), is(equalTo("input1")));
+		sessionManager.clear("local-user");
+		assertThat(sessionManager.get("local-user"), is(equalTo(null)));
+		sessionManager.close();
+	}
+
+	@Test
+	public void testOffloadsVirtualThreads() throws InterruptedException, ExecutionException {
+		if (!VirtualThreads.isSupported()) {
+			return;
+		}
+		final OffloadingSessionManager sessionManager = new OffloadingSessionManager(new ConcurrentHashMapSessionManager() {
+
+			@Override
+			public UserData init(String username) {
+				assertThat(VirtualThreads.isVirtual(Thread.currentThread()), is(equalTo(false)));
+				return super.init(username);
+			}
+		}, 1);
+		ExecutorService executor = VirtualThreads.newExecutor("test-");
+		String name = executor.submit(new Callable<String>() {
+
+			@Override
+			public String call() {
+				sessionManager.set("local-user", "name", "Aiden");
+				return sessionManager.get("local-user", "name");
+			}
+		}).get();
+		assertThat(name, is(equalTo("Aiden")));
+		executor.shutdown();
+		sessionManager.close();
+	}
+
+	@Test
+	public void testInterruptCancelsPendingCall() throws InterruptedException, ExecutionException {
+		if (!VirtualThreads.isSupported()) {
+			return;
+		}
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final OffloadingSessionManager sessionManager = new OffloadingSessionManager(new ConcurrentHashMapSessionManager() {
+
+			@Override
+			public void set(String username, String name, String value) {
+				if (username.equals("blocker")) {
+					blocked.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				super.set(username, name, value);
+			}
+		}, 1);
+		ExecutorService executor = VirtualThreads.newExecutor("test-");
+		executor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				sessionManager.set("blocker", "name", "Bob");
+			}
+		});
+		blocked.await();
+
+		// The only platform thread is busy, so this call is queued when the virtual thread is interrupted.
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		Thread thread = VirtualThreads.newThreadFactory("test-").newThread(new Runnable() {
+
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					sessionManager.set("local-user", "name", "Aiden");
+				} catch (RiveScriptException e) {
+					failure.set(e);
+				}
+			}
+		});
+		thread.start();
+		started.await();
+		thread.interrupt();
+		thread.join();
+		release.countDown();
+
+		// Calls run in order on the single platform thread, so the cancelled call would have run before this one.
+		String name = executor.submit(new Callable<String>() {
+
+			@Override
+			public String call() {
+				return sessionManager.get("local-user", "name");
+			}
+		}).get();
+		assertThat(failure.get() != null, is(equalTo(true)));
+		assertThat(name, is(equalTo(null)));
+		executor.shutdown();
+		sessionManager.close();
+	}
+}
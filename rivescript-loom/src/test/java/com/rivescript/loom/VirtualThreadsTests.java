@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.loom;
+
+import com.rivescript.RiveScript;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link VirtualThreads} and {@link VirtualThreadReplyDispatcher}.
+ *
+ * @author Marcel Overdijk
+ */
+public class VirtualThreadsTests {
+
+	@Test
+	public void testIsVirtual() {
+		assertThat(VirtualThreads.isVirtual(Thread.currentThread()), is(equalTo(false)));
+	}
+
+	@Test
+	public void testNewExecutor() throws InterruptedException, ExecutionException {
+		if (!VirtualThreads.isSupported()) {
+			try {
+				VirtualThreads.newExecutor("test-");
+				fail("Expected UnsupportedOperationException");
+			} catch (UnsupportedOperationException e) {
+				// expected
+			}
+			return;
+		}
+		ExecutorService executor = VirtualThreads.newExecutor("test-");
+		Future<Boolean> virtual = executor.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() {
+				return VirtualThreads.isVirtual(Thread.currentThread());
+			}
+		});
+		assertThat(virtual.get(), is(equalTo(true)));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testVirtualThreadReplyDispatcher() throws InterruptedException, ExecutionException {
+		if (!VirtualThreads.isSupported()) {
+			return;
+		}
+		RiveScript rs = new RiveScript();
+		rs.stream(new String[] {
+				"+ hello bot",
+				"- Hello human."
+		});
+		rs.sortReplies();
+		VirtualThreadReplyDispatcher dispatcher = new VirtualThreadReplyDispatcher(rs);
+		assertThat(dispatcher.submit("local-user", "Hello bot").get(), is(equalTo("Hello human.")));
+		dispatcher.close();
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.server;
+
+import com.rivescript.ReplyRequest;
+import com.rivescript.RiveScript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Handles {@code POST /batch} requests.
+ * <p>
+ * The request is a JSON array of objects with a {@code username} and a {@code message}, the response a JSON object with the
+ * {@code replies} in the same order. The messages are replied to with {@link RiveScript#replyBatch(List)}.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+class BatchHandler extends JsonHandler {
+
+	private final RiveScript rs;
+	private final int maxBatchSize;
+
+	BatchHandler(RiveScript rs, int maxRequestSize, int maxBatchSize) {
+		super(maxRequestSize);
+		this.rs = rs;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	@Override
+	Object handle(Object request) {
+		if (!(request instanceof List)) {
+			throw new IllegalArgumentException("Expected an array of messages");
+		}
+		List<?> items = (List<?>) request;
+		if (items.size() > maxBatchSize) {
+			throw new IllegalArgumentException("Too many messages (maximum " + maxBatchSize + ")");
+		}
+		List<ReplyRequest> requests = new ArrayList<>(items.size());
+		for (Object item : items) {
+			requests.add(toReplyRequest(item));
+		}
+		return Collections.singletonMap("replies", rs.replyBatch(requests));
+	}
+}
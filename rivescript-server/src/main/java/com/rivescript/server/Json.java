@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.server;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for the chat server's messages.
+ * <p>
+ * Only objects, arrays, strings, numbers, booleans and {@code null} are supported. Numbers are read as {@link BigDecimal}s.
+ * Objects and arrays may be nested at most {@link #MAX_DEPTH} levels deep, so hostile input cannot exhaust the stack.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+final class Json {
+
+	/**
+	 * The maximum nesting depth of objects and arrays.
+	 */
+	static final int MAX_DEPTH = 64;
+
+	private final String text;
+	private int pos;
+	private int depth;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parses a JSON document into {@link Map}s, {@link List}s, {@link String}s, {@link BigDecimal}s, {@link Boolean}s and {@code null}.
+	 *
+	 * @param text the JSON document
+	 * @return the parsed value
+	 * @throws IllegalArgumentException in case of invalid JSON, or JSON nested deeper than {@link #MAX_DEPTH} levels
+	 */
+	static Object parse(String text) {
+		Json json = new Json(text);
+		json.skipWhitespace();
+		Object value = json.readValue();
+		json.skipWhitespace();
+		if (json.pos < text.length()) {
+			throw json.error("Unexpected trailing characters");
+		}
+		return value;
+	}
+
+	/**
+	 * Writes a value as JSON.
+	 *
+	 * @param value the value, one of the types returned by {@link #parse(String)}
+	 * @return the JSON document
+	 */
+	static String write(Object value) {
+		StringBuilder sb = new StringBuilder();
+		write(sb, value);
+		return sb.toString();
+	}
+
+	private static void write(StringBuilder sb, Object value) {
+		if (value == null) {
+			sb.append("null");
+		} else if (value instanceof Map) {
+			sb.append('{');
+			boolean first = true;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				if (!first) {
+					sb.append(',');
+				}
+				writeString(sb, String.valueOf(entry.getKey()));
+				sb.append(':');
+				write(sb, entry.getValue());
+				first = false;
+			}
+			sb.append('}');
+		} else if (value instanceof List) {
+			sb.append('[');
+			boolean first = true;
+			for (Object item : (List<?>) value) {
+				if (!first) {
+					sb.append(',');
+				}
+				write(sb, item);
+				first = false;
+			}
+			sb.append(']');
+		} else if (value instanceof Boolean || value instanceof Number) {
+			sb.append(value);
+		} else {
+			writeString(sb, value.toString());
+		}
+	}
+
+	private static void writeString(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		sb.append('"');
+	}
+
+	private Object readValue() {
+		if (pos >= text.length()) {
+			throw error("Unexpected end of input");
+		}
+		char c = text.charAt(pos);
+		switch (c) {
+			case '{':
+				enter();
+				Map<String, Object> object = readObject();
+				depth--;
+				return object;
+			case '[':
+				enter();
+				List<Object> array = readArray();
+				depth--;
+				return array;
+			case '"':
+				return readString();
+			case 't':
+				expect("true");
+				return Boolean.TRUE;
+			case 'f':
+				expect("false");
+				return Boolean.FALSE;
+			case 'n':
+				expect("null");
+				return null;
+			default:
+				if (c == '-' || (c >= '0' && c <= '9')) {
+					return readNumber();
+				}
+				throw error("Unexpected character '" + c + "'");
+		}
+	}
+
+	private Map<String, Object> readObject() {
+		Map<String, Object> object = new LinkedHashMap<>();
+		pos++;
+		skipWhitespace();
+		if (peek() == '}') {
+			pos++;
+			return object;
+		}
+		while (true) {
+			skipWhitespace();
+			if (peek() != '"') {
+				throw error("Expected a string key");
+			}
+			String key = readString();
+			skipWhitespace();
+			if (peek() != ':') {
+				throw error("Expected ':'");
+			}
+			pos++;
+			skipWhitespace();
+			object.put(key, readValue());
+			skipWhitespace();
+			char c = peek();
+			pos++;
+			if (c == '}') {
+				return object;
+			} else if (c != ',') {
+				throw error("Expected ',' or '}'");
+			}
+		}
+	}
+
+	private List<Object> readArray() {
+		List<Object> array = new ArrayList<>();
+		pos++;
+		skipWhitespace();
+		if (peek() == ']') {
+			pos++;
+			return array;
+		}
+		while (true) {
+			skipWhitespace();
+			array.add(readValue());
+			skipWhitespace();
+			char c = peek();
+			pos++;
+			if (c == ']') {
+				return array;
+			} else if (c != ',') {
+				throw error("Expected ',' or ']'");
+			}
+		}
+	}
+
+	private String readString() {
+		StringBuilder sb = new StringBuilder();
+		pos++;
+		while (true) {
+			char c = peek();
+			pos++;
+			if (c == '"') {
+				return sb.toString();
+			} else if (c == '\\') {
+				char escaped = peek();
+				pos++;
+				switch (escaped) {
+					case 'b':
+						sb.append('\b');
+						break;
+					case 'f':
+						sb.append('\f');
+						break;
+					case 'n':
+						sb.append('\n');
+						break;
+					case 'r':
+						sb.append('\r');
+						break;
+					case 't':
+						sb.append('\t');
+						break;
+					case 'u':
+						if (pos + 4 > text.length()) {
+							throw error("Invalid unicode escape");
+						}
+						try {
+							sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+						} catch (NumberFormatException e) {
+							throw error("Invalid unicode escape");
+						}
+						pos += 4;
+						break;
+					default:
+						sb.append(escaped);
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	private BigDecimal readNumber() {
+		int start = pos;
+		while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+			pos++;
+		}
+		try {
+			return new BigDecimal(text.substring(start, pos));
+		} catch (NumberFormatException e) {
+			throw error("Invalid number");
+		}
+	}
+
+	private void expect(String literal) {
+		if (!text.startsWith(literal, pos)) {
+			throw error("Expected '" + literal + "'");
+		}
+		pos += literal.length();
+	}
+
+	private char peek() {
+		if (pos >= text.length()) {
+			throw error("Unexpected end of input");
+		}
+		return text.charAt(pos);
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private void enter() {
+		if (++depth > MAX_DEPTH) {
+			throw error("Nesting deeper than " + MAX_DEPTH + " levels");
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + pos);
+	}
+}
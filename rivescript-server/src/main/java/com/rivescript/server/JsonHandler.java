@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.server;
+
+import com.rivescript.ReplyRequest;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Base {@link HttpHandler} for endpoints accepting and returning JSON documents.
+ * <p>
+ * Only {@code POST} requests are accepted. Responses always carry a {@code Content-Length}, so connections are kept alive
+ * and pipelined requests are answered in order.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+abstract class JsonHandler implements HttpHandler {
+
+	private static Logger logger = LoggerFactory.getLogger(JsonHandler.class);
+
+	private final int maxRequestSize;
+
+	JsonHandler(int maxRequestSize) {
+		this.maxRequestSize = maxRequestSize;
+	}
+
+	/**
+	 * Handles a parsed JSON request and returns the JSON response.
+	 *
+	 * @param request the parsed request
+	 * @return the response
+	 * @throws IllegalArgumentException in case of an invalid request
+	 */
+	abstract Object handle(Object request);
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.getResponseHeaders().set("Allow", "POST");
+				send(exchange, 405, error("Method not allowed"));
+				return;
+			}
+			String body = readBody(exchange.getRequestBody());
+			if (body == null) {
+				send(exchange, 413, error("Request too large"));
+				return;
+			}
+			Object response;
+			try {
+				response = handle(Json.parse(body));
+			} catch (IllegalArgumentException e) {
+				send(exchange, 400, error(e.getMessage()));
+				return;
+			}
+			send(exchange, 200, response);
+		} catch (RuntimeException e) {
+			logger.error("Error handling request: {}", e.getMessage(), e);
+			send(exchange, 500, error("Internal server error"));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Converts a JSON object with a {@code username} and a {@code message} to a {@link ReplyRequest}.
+	 */
+	static ReplyRequest toReplyRequest(Object value) {
+		if (!(value instanceof Map)) {
+			throw new IllegalArgumentException("Expected an object with a 'username' and a 'message'");
+		}
+		Object username = ((Map<?, ?>) value).get("username");
+		Object message = ((Map<?, ?>) value).get("message");
+		if (!(username instanceof String) || ((String) username).isEmpty()) {
+			throw new IllegalArgumentException("Missing 'username'");
+		}
+		if (!(message instanceof String)) {
+			throw new IllegalArgumentException("Missing 'message'");
+		}
+		return new ReplyRequest((String) username, (String) message);
+	}
+
+	static Map<String, Object> error(String message) {
+		return Collections.<String, Object>singletonMap("error", message);
+	}
+
+	/**
+	 * Reads the request body, or returns {@code null} if it exceeds the maximum request size.
+	 */
+	private String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			if (out.size() + read > maxRequestSize) {
+				return null;
+			}
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private void send(HttpExchange exchange, int status, Object body) throws IOException {
+		byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.server;
+
+import com.rivescript.ReplyRequest;
+import com.rivescript.RiveScript;
+
+import java.util.Collections;
+
+/**
+ * Handles {@code POST /reply} requests.
+ * <p>
+ * The request is a JSON object with a {@code username} and a {@code message}, the response a JSON object with the {@code reply}.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+class ReplyHandler extends JsonHandler {
+
+	private final RiveScript rs;
+
+	ReplyHandler(RiveScript rs, int maxRequestSize) {
+		super(maxRequestSize);
+		this.rs = rs;
+	}
+
+	@Override
+	Object handle(Object request) {
+		ReplyRequest replyRequest = toReplyRequest(request);
+		return Collections.singletonMap("reply", rs.reply(replyRequest.getUsername(), replyRequest.getMessage()));
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.server;
+
+import com.rivescript.Config;
+import com.rivescript.RiveScript;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lightweight chat server serving a RiveScript bot over HTTP/1.1 and WebSocket, using only the JDK.
+ * <p>
+ * Endpoints:
+ * <ul>
+ * <li>{@code POST /reply} with {@code {"username": "...", "message": "..."}}, answered with {@code {"reply": "..."}}
+ * <li>{@code POST /batch} with an array of such messages, answered with {@code {"replies": [...]}} in the same order
+ * <li>a WebSocket endpoint on its own port (when enabled), accepting the same messages as text frames
+ * </ul>
+ * HTTP connections are kept alive and pipelined requests are answered in order. Requests are handled on a worker pool.
+ * <p>
+ * Usage:
+ * <p>
+ * <pre>
+ * <code>
+ * RiveScriptServer server = RiveScriptServer.newBuilder(rs)
+ *         .port(8080)
+ *         .webSocketPort(8081)
+ *         .build();
+ * server.start();
+ * </code>
+ * </pre>
+ * <p>
+ * Or stand-alone: {@code java com.rivescript.server.RiveScriptServer [options] </path/to/documents>}
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code --port=8080} The HTTP port (default {@code 8080})
+ * <li>{@code --ws-port=8081} The WebSocket port (default disabled)
+ * <li>{@code --threads=16} The number of worker threads (default twice the number of available processors)
+ * <li>{@code --utf8} Enable UTF-8 mode
+ * </ul>
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+public class RiveScriptServer implements Closeable {
+
+	/**
+	 * The default HTTP port.
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * The default maximum size of a request body or WebSocket message in bytes.
+	 */
+	public static final int DEFAULT_MAX_REQUEST_SIZE = 64 * 1024;
+
+	/**
+	 * The default maximum number of messages in a batch request.
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+	private final RiveScript rs;
+	private final String host;
+	private final int port;
+	private final int webSocketPort;
+	private final int backlog;
+	private final int workerThreads;
+	private final int maxRequestSize;
+	private final int maxBatchSize;
+
+	private ExecutorService workers;
+	private HttpServer httpServer;
+	private WebSocketServer webSocketServer;
+
+	private RiveScriptServer(Builder builder) {
+		this.rs = builder.rs;
+		this.host = builder.host;
+		this.port = builder.port;
+		this.webSocketPort = builder.webSocketPort;
+		this.backlog = builder.backlog;
+		this.workerThreads = builder.workerThreads;
+		this.maxRequestSize = builder.maxRequestSize;
+		this.maxBatchSize = builder.maxBatchSize;
+	}
+
+	/**
+	 * Starts the server.
+	 *
+	 * @throws IOException in case a port cannot be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (httpServer != null) {
+			throw new IllegalStateException("Server already started");
+		}
+		workers = Executors.newFixedThreadPool(workerThreads, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "rivescript-server-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			httpServer = HttpServer.create(address(port), backlog);
+			httpServer.createContext("/reply", new ReplyHandler(rs, maxRequestSize));
+			httpServer.createContext("/batch", new BatchHandler(rs, maxRequestSize, maxBatchSize));
+			httpServer.setExecutor(workers);
+			if (webSocketPort >= 0) {
+				webSocketServer = new WebSocketServer(rs, address(webSocketPort), backlog, workers, maxRequestSize);
+				webSocketServer.start();
+			}
+			httpServer.start();
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the bound HTTP port.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the bound WebSocket port, or {@code -1} if the WebSocket endpoint is disabled.
+	 *
+	 * @return the port
+	 */
+	public int getWebSocketPort() {
+		return webSocketServer != null ? webSocketServer.getPort() : -1;
+	}
+
+	/**
+	 * Stops the server and its worker pool.
+	 */
+	@Override
+	public synchronized void close() {
+		if (httpServer != null) {
+			httpServer.stop(0);
+			httpServer = null;
+		}
+		if (webSocketServer != null) {
+			webSocketServer.close();
+			webSocketServer = null;
+		}
+		if (workers != null) {
+			workers.shutdown();
+			workers = null;
+		}
+	}
+
+	private InetSocketAddress address(int port) {
+		return host != null ? new InetSocketAddress(host, port) : new InetSocketAddress(port);
+	}
+
+	/**
+	 * Creates a new {@link Builder}.
+	 *
+	 * @param rs the RiveScript instance to serve
+	 * @return the builder
+	 */
+	public static Builder newBuilder(RiveScript rs) {
+		return new Builder(rs);
+	}
+
+	/**
+	 * Runs a stand-alone server.
+	 *
+	 * @param args the arguments
+	 * @throws IOException in case a port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		Builder builder = newBuilder(null);
+		boolean utf8 = false;
+
+		// Collect command line arguments.
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		Iterator<String> it = arguments.iterator();
+		while (it.hasNext()) {
+			String argument = it.next();
+			if (argument.charAt(0) == '-') {
+				String flag = argument.replaceAll("^-*", "").trim();
+				if (flag.startsWith("port=")) {
+					builder.port(Integer.parseInt(flag.split("=", 2)[1]));
+				} else if (flag.startsWith("ws-port=")) {
+					builder.webSocketPort(Integer.parseInt(flag.split("=", 2)[1]));
+				} else if (flag.startsWith("threads=")) {
+					builder.workerThreads(Integer.parseInt(flag.split("=", 2)[1]));
+				} else if (flag.equals("utf8")) {
+					utf8 = true;
+				}
+				it.remove();
+			}
+		}
+
+		if (arguments.size() == 0) {
+			System.err.println("Usage: java com.rivescript.server.RiveScriptServer [options] </path/to/documents>");
+			System.exit(0);
+		}
+
+		RiveScript rs = new RiveScript(Config.newBuilder().utf8(utf8).build());
+		rs.loadDirectory(arguments.get(0));
+		rs.sortReplies();
+
+		builder.rs = rs;
+		final RiveScriptServer server = builder.build();
+		server.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				server.close();
+			}
+		}));
+
+		System.out.println("RiveScript server (library version " + RiveScript.getVersion() + ") listening on port " + server.getPort()
+				+ (server.getWebSocketPort() >= 0 ? ", WebSocket on port " + server.getWebSocketPort() : ""));
+	}
+
+	/**
+	 * Builder for {@link RiveScriptServer}.
+	 */
+	public static final class Builder {
+
+		private RiveScript rs;
+		private String host;
+		private int port = DEFAULT_PORT;
+		private int webSocketPort = -1;
+		private int backlog;
+		private int workerThreads = Runtime.getRuntime().availableProcessors() * 2;
+		private int maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+		private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+		private Builder(RiveScript rs) {
+			this.rs = rs;
+		}
+
+		/**
+		 * Sets the host name or address to bind to. Defaults to all addresses.
+		 *
+		 * @param host the host
+		 * @return this builder
+		 */
+		public Builder host(String host) {
+			this.host = host;
+			return this;
+		}
+
+		/**
+		 * Sets the HTTP port, or {@code 0} to bind to any free port.
+		 *
+		 * @param port the port
+		 * @return this builder
+		 */
+		public Builder port(int port) {
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * Sets the WebSocket port, {@code 0} to bind to any free port or {@code -1} to disable the WebSocket endpoint (the default).
+		 *
+		 * @param webSocketPort the port
+		 * @return this builder
+		 */
+		public Builder webSocketPort(int webSocketPort) {
+			this.webSocketPort = webSocketPort;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of pending connections, or {@code 0} to use the system default.
+		 *
+		 * @param backlog the backlog
+		 * @return this builder
+		 */
+		public Builder backlog(int backlog) {
+			this.backlog = backlog;
+			return this;
+		}
+
+		/**
+		 * Sets the number of worker threads handling requests.
+		 *
+		 * @param workerThreads the number of worker threads
+		 * @return this builder
+		 */
+		public Builder workerThreads(int workerThreads) {
+			this.workerThreads = workerThreads;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum size of a request body or WebSocket message in bytes.
+		 *
+		 * @param maxRequestSize the maximum size
+		 * @return this builder
+		 */
+		public Builder maxRequestSize(int maxRequestSize) {
+			this.maxRequestSize = maxRequestSize;
+			return this;
+		}
+
+		/**
+		 * Sets the maximum number of messages in a batch request.
+		 *
+		 * @param maxBatchSize the maximum number of messages
+		 * @return this builder
+		 */
+		public Builder maxBatchSize(int maxBatchSize) {
+			this.maxBatchSize = maxBatchSize;
+			return this;
+		}
+
+		/**
+		 * Builds the server. The server is not started.
+		 *
+		 * @return the server
+		 */
+		public RiveScriptServer build() {
+			if (rs == null) {
+				throw new IllegalArgumentException("'rs' must not be null");
+			}
+			if (workerThreads <= 0) {
+				throw new IllegalArgumentException("'workerThreads' must be greater than 0");
+			}
+			return new RiveScriptServer(this);
+		}
+	}
+}
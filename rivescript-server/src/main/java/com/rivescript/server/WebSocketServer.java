@@ -0,0 +1,534 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.server;
+
+import com.rivescript.ReplyDispatcher;
+import com.rivescript.ReplyRequest;
+import com.rivescript.RiveScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking WebSocket (RFC 6455) chat endpoint.
+ * <p>
+ * A single selector thread accepts connections, performs the upgrade handshake and decodes frames. Each text message is a JSON object
+ * with a {@code username}, a {@code message} and an optional {@code id}; it is parsed and replied to on the worker pool through a
+ * {@link ReplyDispatcher}, and answered with a JSON object holding the {@code id}, the {@code username} and the {@code reply}.
+ * An error handling a connection only closes that connection.
+ * Fragmented messages and pings are supported, binary messages are not.
+ *
+ * @author Noah Petherbridge
+ * @author Marcel Overdijk
+ */
+class WebSocketServer implements Closeable {
+
+	private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	private static final int OPCODE_CONTINUATION = 0x0;
+	private static final int OPCODE_TEXT = 0x1;
+	private static final int OPCODE_BINARY = 0x2;
+	private static final int OPCODE_CLOSE = 0x8;
+	private static final int OPCODE_PING = 0x9;
+	private static final int OPCODE_PONG = 0xA;
+
+	private static final int CLOSE_PROTOCOL_ERROR = 1002;
+	private static final int CLOSE_UNSUPPORTED_DATA = 1003;
+	private static final int CLOSE_TOO_BIG = 1009;
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+	private static final int MAX_FRAME_HEADER_SIZE = 14;
+
+	private static Logger logger = LoggerFactory.getLogger(WebSocketServer.class);
+
+	private final RiveScript rs;
+	private final ReplyDispatcher dispatcher;
+	private final int maxMessageSize;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final Queue<Connection> pendingWrites;
+	private final AtomicLong connectionIds = new AtomicLong();
+	private final Thread thread;
+	private volatile boolean running;
+
+	WebSocketServer(RiveScript rs, InetSocketAddress address, int backlog, Executor executor, int maxMessageSize) throws IOException {
+		this.rs = rs;
+		this.dispatcher = new ReplyDispatcher(rs, executor);
+		this.maxMessageSize = maxMessageSize;
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.socket().setReuseAddress(true);
+		this.serverChannel.socket().bind(address, backlog);
+		this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		this.pendingWrites = new ConcurrentLinkedQueue<>();
+		this.thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				loop();
+			}
+		}, "rivescript-websocket");
+		this.thread.setDaemon(true);
+	}
+
+	void start() {
+		running = true;
+		thread.start();
+	}
+
+	int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		dispatcher.close();
+	}
+
+	private void loop() {
+		try {
+			while (running) {
+				selector.select();
+				Connection pending;
+				while ((pending = pendingWrites.poll()) != null) {
+					if (pending.key.isValid()) {
+						pending.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					}
+				}
+				Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Connection connection = (Connection) key.attachment();
+					try {
+						if (key.isReadable()) {
+							connection.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					} catch (IOException e) {
+						logger.debug("Closing WebSocket connection: {}", e.getMessage());
+						connection.close();
+					} catch (RuntimeException | Error e) {
+						logger.error("Closing WebSocket connection after an error: {}", e.getMessage(), e);
+						connection.close();
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.error("WebSocket server stopped: {}", e.getMessage(), e);
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				closeQuietly(key.channel());
+			}
+			closeQuietly(selector);
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel;
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+			key.attach(new Connection(channel, key));
+		}
+	}
+
+	/**
+	 * Parses a text message on the worker pool, keeping the messages of a connection in order, and replies to it.
+	 */
+	private void parse(final Connection connection, final String text) {
+		try {
+			dispatcher.submit(connection.id, new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					Object message;
+					ReplyRequest request;
+					try {
+						message = Json.parse(text);
+						request = JsonHandler.toReplyRequest(message);
+					} catch (IllegalArgumentException e) {
+						connection.sendText(Json.write(JsonHandler.error(e.getMessage())));
+						return null;
+					}
+					reply(connection, ((Map<?, ?>) message).get("id"), request);
+					return null;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			connection.sendText(Json.write(JsonHandler.error("Server busy")));
+		}
+	}
+
+	private void reply(final Connection connection, final Object id, final ReplyRequest request) {
+		try {
+			dispatcher.submit(request.getUsername(), new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					Map<String, Object> response = new LinkedHashMap<>();
+					if (id != null) {
+						response.put("id", id);
+					}
+					response.put("username", request.getUsername());
+					try {
+						response.put("reply", rs.reply(request.getUsername(), request.getMessage()));
+					} catch (RuntimeException e) {
+						logger.error("Error replying to WebSocket message: {}", e.getMessage(), e);
+						response.put("error", "Internal server error");
+					}
+					connection.sendText(Json.write(response));
+					return null;
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			Map<String, Object> response = new LinkedHashMap<>();
+			if (id != null) {
+				response.put("id", id);
+			}
+			response.put("error", "Server busy");
+			connection.sendText(Json.write(response));
+		}
+	}
+
+	private static String acceptKey(String key) {
+		try {
+			MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+			return base64(sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not available", e);
+		}
+	}
+
+	private static String base64(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < bytes.length; i += 3) {
+			int b = (bytes[i] & 0xFF) << 16;
+			if (i + 1 < bytes.length) {
+				b |= (bytes[i + 1] & 0xFF) << 8;
+			}
+			if (i + 2 < bytes.length) {
+				b |= bytes[i + 2] & 0xFF;
+			}
+			sb.append(BASE64[(b >> 18) & 0x3F]);
+			sb.append(BASE64[(b >> 12) & 0x3F]);
+			sb.append(i + 1 < bytes.length ? BASE64[(b >> 6) & 0x3F] : '=');
+			sb.append(i + 2 < bytes.length ? BASE64[b & 0x3F] : '=');
+		}
+		return sb.toString();
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// Ignore.
+		}
+	}
+
+	/**
+	 * The state of a client connection. All methods except {@link #sendText(String)} are only called by the selector thread.
+	 */
+	private class Connection {
+
+		private final String id;
+		private final SocketChannel channel;
+		private final SelectionKey key;
+		private final Queue<ByteBuffer> out = new ArrayDeque<>();
+		private ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+		private ByteArrayOutputStream fragments;
+		private boolean upgraded;
+		private boolean closing;
+		private volatile boolean closed;
+
+		Connection(SocketChannel channel, SelectionKey key) {
+			this.id = "websocket-connection-" + connectionIds.incrementAndGet();
+			this.channel = channel;
+			this.key = key;
+		}
+
+		void read() throws IOException {
+			if (!in.hasRemaining()) {
+				int limit = upgraded ? maxMessageSize + MAX_FRAME_HEADER_SIZE : INITIAL_BUFFER_SIZE;
+				if (in.capacity() >= limit) {
+					if (upgraded) {
+						sendClose(CLOSE_TOO_BIG);
+					} else {
+						close();
+					}
+					return;
+				}
+				ByteBuffer grown = ByteBuffer.allocate(Math.min(in.capacity() * 2, limit));
+				in.flip();
+				grown.put(in);
+				in = grown;
+			}
+			if (channel.read(in) < 0) {
+				close();
+				return;
+			}
+			in.flip();
+			try {
+				if (!upgraded) {
+					handshake();
+				}
+				while (upgraded && !closing && readFrame()) {
+					// Keep decoding the buffered frames.
+				}
+			} finally {
+				in.compact();
+			}
+		}
+
+		void write() throws IOException {
+			synchronized (out) {
+				while (!out.isEmpty()) {
+					ByteBuffer buffer = out.peek();
+					channel.write(buffer);
+					if (buffer.hasRemaining()) {
+						return;
+					}
+					out.poll();
+				}
+				key.interestOps(SelectionKey.OP_READ);
+			}
+			if (closing) {
+				close();
+			}
+		}
+
+		void sendText(String text) {
+			send(OPCODE_TEXT, text.getBytes(StandardCharsets.UTF_8));
+		}
+
+		void close() {
+			closed = true;
+			key.cancel();
+			closeQuietly(channel);
+			synchronized (out) {
+				out.clear();
+			}
+		}
+
+		private void handshake() {
+			int end = indexOfHeaderEnd();
+			if (end < 0) {
+				return;
+			}
+			byte[] bytes = new byte[end - in.position()];
+			in.get(bytes);
+			in.position(end + 4);
+			String[] lines = new String(bytes, StandardCharsets.ISO_8859_1).split("\r\n");
+			Map<String, String> headers = new HashMap<>();
+			for (int i = 1; i < lines.length; i++) {
+				int colon = lines[i].indexOf(':');
+				if (colon > 0) {
+					headers.put(lines[i].substring(0, colon).trim().toLowerCase(), lines[i].substring(colon + 1).trim());
+				}
+			}
+			String key = headers.get("sec-websocket-key");
+			if (!lines[0].startsWith("GET ") || !"websocket".equalsIgnoreCase(headers.get("upgrade")) || key == null) {
+				enqueue(ByteBuffer.wrap(("HTTP/1.1 400 Bad Request\r\n"
+						+ "Content-Length: 0\r\n"
+						+ "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+				closing = true;
+				return;
+			}
+			enqueue(ByteBuffer.wrap(("HTTP/1.1 101 Switching Protocols\r\n"
+					+ "Upgrade: websocket\r\n"
+					+ "Connection: Upgrade\r\n"
+					+ "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1)));
+			upgraded = true;
+		}
+
+		private int indexOfHeaderEnd() {
+			for (int i = in.position(); i + 3 < in.limit(); i++) {
+				if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Decodes and handles the next frame, or returns {@code false} if the frame is not completely buffered yet.
+		 */
+		private boolean readFrame() {
+			int start = in.position();
+			if (in.remaining() < 2) {
+				return false;
+			}
+			int b0 = in.get() & 0xFF;
+			int b1 = in.get() & 0xFF;
+			boolean fin = (b0 & 0x80) != 0;
+			int opcode = b0 & 0x0F;
+			long length = b1 & 0x7F;
+			if (length == 126) {
+				if (in.remaining() < 2) {
+					in.position(start);
+					return false;
+				}
+				length = in.getShort() & 0xFFFF;
+			} else if (length == 127) {
+				if (in.remaining() < 8) {
+					in.position(start);
+					return false;
+				}
+				length = in.getLong();
+			}
+			if ((b1 & 0x80) == 0) {
+				// Client frames must be masked.
+				sendClose(CLOSE_PROTOCOL_ERROR);
+				return false;
+			}
+			if (length < 0 || length > maxMessageSize) {
+				sendClose(CLOSE_TOO_BIG);
+				return false;
+			}
+			if (in.remaining() < 4 + length) {
+				in.position(start);
+				return false;
+			}
+			byte[] mask = new byte[4];
+			in.get(mask);
+			byte[] payload = new byte[(int) length];
+			in.get(payload);
+			for (int i = 0; i < payload.length; i++) {
+				payload[i] ^= mask[i & 3];
+			}
+
+			switch (opcode) {
+				case OPCODE_TEXT:
+				case OPCODE_CONTINUATION:
+					if ((opcode == OPCODE_TEXT) == (fragments != null)) {
+						sendClose(CLOSE_PROTOCOL_ERROR);
+						return false;
+					}
+					if (fragments == null) {
+						fragments = new ByteArrayOutputStream();
+					}
+					if (fragments.size() + payload.length > maxMessageSize) {
+						sendClose(CLOSE_TOO_BIG);
+						return false;
+					}
+					fragments.write(payload, 0, payload.length);
+					if (fin) {
+						String text = new String(fragments.toByteArray(), StandardCharsets.UTF_8);
+						fragments = null;
+						parse(this, text);
+					}
+					return true;
+				case OPCODE_BINARY:
+					sendClose(CLOSE_UNSUPPORTED_DATA);
+					return false;
+				case OPCODE_CLOSE:
+					send(OPCODE_CLOSE, payload.length >= 2 ? new byte[] {payload[0], payload[1]} : new byte[0]);
+					closing = true;
+					return false;
+				case OPCODE_PING:
+					send(OPCODE_PONG, payload);
+					return true;
+				case OPCODE_PONG:
+					return true;
+				default:
+					sendClose(CLOSE_PROTOCOL_ERROR);
+					return false;
+			}
+		}
+
+		private void sendClose(int code) {
+			send(OPCODE_CLOSE, new byte[] {(byte) (code >> 8), (byte) code});
+			closing = true;
+		}
+
+		private void send(int opcode, byte[] payload) {
+			ByteBuffer frame = ByteBuffer.allocate(MAX_FRAME_HEADER_SIZE + payload.length);
+			frame.put((byte) (0x80 | opcode));
+			if (payload.length < 126) {
+				frame.put((byte) payload.length);
+			} else if (payload.length <= 0xFFFF) {
+				frame.put((byte) 126);
+				frame.putShort((short) payload.length);
+			} else {
+				frame.put((byte) 127);
+				frame.putLong(payload.length);
+			}
+			frame.put(payload);
+			frame.flip();
+			enqueue(frame);
+		}
+
+		private void enqueue(ByteBuffer buffer) {
+			synchronized (out) {
+				if (closed) {
+					return;
+				}
+				out.add(buffer);
+			}
+			pendingWrites.add(this);
+			selector.wakeup();
+		}
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.server;
+
+import com.rivescript.RiveScript;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link RiveScriptServer}.
+ *
+ * @author Marcel Overdijk
+ */
+public class RiveScriptServerTests {
+
+	private RiveScriptServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		RiveScript rs = new RiveScript();
+		rs.stream(new String[] {
+				"+ hello bot",
+				"- Hello human.",
+				"",
+				"+ my name is *",
+				"- <set name=<formal>>Nice to meet you, <get name>.",
+				"",
+				"+ what is my name",
+				"- Your name is <get name>."
+		});
+		rs.sortReplies();
+		server = RiveScriptServer.newBuilder(rs)
+				.host("127.0.0.1")
+				.port(0)
+				.webSocketPort(0)
+				.workerThreads(2)
+				.build();
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testReply() throws IOException {
+		assertThat(post("/reply", "{\"username\": \"local-user\", \"message\": \"hello bot\"}"), is(equalTo("{\"reply\":\"Hello human.\"}")));
+	}
+
+	@Test
+	public void testBatch() throws IOException {
+		String response = post("/batch", "["
+				+ "{\"username\": \"user1\", \"message\": \"my name is aiden\"},"
+				+ "{\"username\": \"user2\", \"message\": \"hello bot\"},"
+				+ "{\"username\": \"user1\", \"message\": \"what is my name\"}"
+				+ "]");
+		assertThat(response, is(equalTo("{\"replies\":[\"Nice to meet you, Aiden.\",\"Hello human.\",\"Your name is Aiden.\"]}")));
+	}
+
+	@Test
+	public void testBadRequest() throws IOException {
+		HttpURLConnection connection = open("/reply", "{\"message\": \"hello bot\"}");
+		assertThat(connection.getResponseCode(), is(equalTo(400)));
+		connection.disconnect();
+	}
+
+	@Test
+	public void testDeeplyNestedRequest() throws IOException {
+		HttpURLConnection connection = open("/reply", nested(32000));
+		assertThat(connection.getResponseCode(), is(equalTo(400)));
+		connection.disconnect();
+	}
+
+	@Test
+	public void testPipelining() throws IOException {
+		String body = "{\"username\": \"local-user\", \"message\": \"hello bot\"}";
+		String request = "POST /reply HTTP/1.1\r\n"
+				+ "Host: 127.0.0.1\r\n"
+				+ "Content-Type: application/json\r\n"
+				+ "Content-Length: " + body.length() + "\r\n\r\n"
+				+ body;
+		try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+			socket.setSoTimeout(5000);
+			OutputStream out = socket.getOutputStream();
+			out.write((request + request).getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			InputStream in = socket.getInputStream();
+			for (int i = 0; i < 2; i++) {
+				String headers = readHeaders(in);
+				assertThat(headers, containsString("200"));
+				String reply = new String(readFully(in, contentLength(headers)), StandardCharsets.UTF_8);
+				assertThat(reply, is(equalTo("{\"reply\":\"Hello human.\"}")));
+			}
+		}
+	}
+
+	@Test
+	public void testWebSocket() throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", server.getWebSocketPort())) {
+			socket.setSoTimeout(5000);
+			OutputStream out = socket.getOutputStream();
+			out.write(("GET /chat HTTP/1.1\r\n"
+					+ "Host: 127.0.0.1\r\n"
+					+ "Upgrade: websocket\r\n"
+					+ "Connection: Upgrade\r\n"
+					+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+					+ "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+			out.flush();
+			InputStream in = socket.getInputStream();
+			String headers = readHeaders(in);
+			assertThat(headers, containsString("101"));
+			assertThat(headers, containsString("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+
+			writeFrame(out, 0x1, "{\"id\": 1, \"username\": \"local-user\", \"message\": \"hello bot\"}".getBytes(StandardCharsets.UTF_8));
+			assertThat(readTextFrame(in), is(equalTo("{\"id\":1,\"username\":\"local-user\",\"reply\":\"Hello human.\"}")));
+
+			writeFrame(out, 0x9, new byte[] {1, 2});
+			DataInputStream data = new DataInputStream(in);
+			assertThat(data.readUnsignedByte(), is(equalTo(0x8A)));
+			assertThat(data.readUnsignedByte(), is(equalTo(2)));
+			data.readShort();
+
+			writeFrame(out, 0x8, new byte[] {0x03, (byte) 0xE8});
+			assertThat(data.readUnsignedByte(), is(equalTo(0x88)));
+		}
+	}
+
+	@Test
+	public void testWebSocketDeeplyNestedMessage() throws IOException {
+		try (Socket socket = new Socket("127.0.0.1", server.getWebSocketPort())) {
+			socket.setSoTimeout(5000);
+			OutputStream out = socket.getOutputStream();
+			out.write(("GET /chat HTTP/1.1\r\n"
+					+ "Host: 127.0.0.1\r\n"
+					+ "Upgrade: websocket\r\n"
+					+ "Connection: Upgrade\r\n"
+					+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+					+ "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+			out.flush();
+			InputStream in = socket.getInputStream();
+			assertThat(readHeaders(in), containsString("101"));
+
+			// The message is rejected, the connection stays usable.
+			writeFrame(out, 0x1, nested(100).getBytes(StandardCharsets.UTF_8));
+			assertThat(readTextFrame(in), containsString("Nesting deeper than"));
+			writeFrame(out, 0x1, "{\"id\": 1, \"username\": \"local-user\", \"message\": \"hello bot\"}".getBytes(StandardCharsets.UTF_8));
+			assertThat(readTextFrame(in), is(equalTo("{\"id\":1,\"username\":\"local-user\",\"reply\":\"Hello human.\"}")));
+		}
+	}
+
+	private static String nested(int depth) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < depth; i++) {
+			sb.append('[');
+		}
+		return sb.toString();
+	}
+
+	private String post(String path, String body) throws IOException {
+		HttpURLConnection connection = open(path, body);
+		assertThat(connection.getResponseCode(), is(equalTo(200)));
+		try (InputStream in = connection.getInputStream()) {
+			return new String(readFully(in, connection.getContentLength()), StandardCharsets.UTF_8);
+		}
+	}
+
+	private HttpURLConnection open(String path, String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/json");
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		return connection;
+	}
+
+	private static String readHeaders(InputStream in) throws IOException {
+		ByteArrayOutputStream headers = new ByteArrayOutputStream();
+		int matched = 0;
+		while (matched < 4) {
+			int b = in.read();
+			if (b < 0) {
+				throw new IOException("Unexpected end of stream");
+			}
+			headers.write(b);
+			matched = (b == '\r' && (matched == 0 || matched == 2)) || (b == '\n' && (matched == 1 || matched == 3)) ? matched + 1 : 0;
+		}
+		return new String(headers.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+
+	private static int contentLength(String headers) {
+		for (String line : headers.split("\r\n")) {
+			if (line.toLowerCase().startsWith("content-length:")) {
+				return Integer.parseInt(line.substring(15).trim());
+			}
+		}
+		throw new IllegalStateException("Missing Content-Length");
+	}
+
+	private static byte[] readFully(InputStream in, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		new DataInputStream(in).readFully(bytes);
+		return bytes;
+	}
+
+	private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+		byte[] mask = new byte[] {0x12, 0x34, 0x56, 0x78};
+		out.write(0x80 | opcode);
+		out.write(0x80 | payload.length);
+		out.write(mask);
+		for (int i = 0; i < payload.length; i++) {
+			out.write(payload[i] ^ mask[i & 3]);
+		}
+		out.flush();
+	}
+
+	private static String readTextFrame(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		assertThat(data.readUnsignedByte(), is(equalTo(0x81)));
+		int length = data.readUnsignedByte();
+		if (length == 126) {
+			length = data.readUnsignedShort();
+		}
+		return new String(readFully(in, length), StandardCharsets.UTF_8);
+	}
+}
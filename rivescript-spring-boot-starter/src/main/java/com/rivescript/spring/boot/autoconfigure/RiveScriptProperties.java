@@ -44,6 +44,10 @@ public class RiveScriptProperties {
 
 	public static final String DEFAULT_SOURCE_PATH = "classpath:/rivescript/";
 
+	public static final String DEFAULT_REACTIVE_PATH = "/rivescript/reply";
+
+	public static final int DEFAULT_REACTIVE_MAX_CONCURRENCY = 256;
+
 	/**
 	 * Enable RiveScript for the application.
 	 */
@@ -104,6 +108,11 @@ public class RiveScriptProperties {
 	 */
 	private String objectHandlers;
 
+	/**
+	 * The reactive reply settings (only used when Project Reactor is on the classpath).
+	 */
+	private final Reactive reactive = new Reactive();
+
 	public boolean isEnabled() {
 		return enabled;
 	}
@@ -199,4 +208,63 @@ public class RiveScriptProperties {
 	public void setObjectHandlers(String objectHandlers) {
 		this.objectHandlers = objectHandlers;
 	}
+
+	public Reactive getReactive() {
+		return reactive;
+	}
+
+	public static class Reactive {
+
+		/**
+		 * Enable the reactive reply facade.
+		 */
+		private boolean enabled = true;
+
+		/**
+		 * The number of threads replying to messages.
+		 */
+		private int threads = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * The maximum number of replies in flight. Further requests are rejected until replies complete.
+		 */
+		private int maxConcurrency = DEFAULT_REACTIVE_MAX_CONCURRENCY;
+
+		/**
+		 * The path of the WebFlux reply endpoint (only used in reactive web applications).
+		 */
+		private String path = DEFAULT_REACTIVE_PATH;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public int getMaxConcurrency() {
+			return maxConcurrency;
+		}
+
+		public void setMaxConcurrency(int maxConcurrency) {
+			this.maxConcurrency = maxConcurrency;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+	}
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.spring.boot.autoconfigure;
+
+import com.rivescript.RiveScript;
+import com.rivescript.spring.boot.reactive.ReactiveRiveScript;
+import com.rivescript.spring.boot.reactive.RiveScriptHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RequestPredicates;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link EnableAutoConfiguration Auto-configuration} for the reactive RiveScript facade and its WebFlux reply endpoint.
+ *
+ * @author Marcel Overdijk
+ */
+@Configuration
+@ConditionalOnClass(Mono.class)
+@ConditionalOnBean(RiveScript.class)
+@ConditionalOnProperty(prefix = "rivescript.reactive", name = "enabled", matchIfMissing = true)
+@AutoConfigureAfter(RiveScriptAutoConfiguration.class)
+public class RiveScriptReactiveAutoConfiguration {
+
+	@Autowired
+	private RiveScriptProperties properties;
+
+	@Bean
+	@ConditionalOnMissingBean(ReactiveRiveScript.class)
+	public ReactiveRiveScript reactiveRiveScript(RiveScript rs) {
+		return new ReactiveRiveScript(rs, properties.getReactive().getThreads(), properties.getReactive().getMaxConcurrency());
+	}
+
+	@Configuration
+	@ConditionalOnClass(RouterFunction.class)
+	@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+	protected static class RiveScriptWebFluxConfiguration {
+
+		@Autowired
+		private RiveScriptProperties properties;
+
+		@Bean
+		@ConditionalOnMissingBean(name = "riveScriptRouterFunction")
+		public RouterFunction<ServerResponse> riveScriptRouterFunction(ReactiveRiveScript rs) {
+			return RouterFunctions.route(RequestPredicates.POST(properties.getReactive().getPath()), new RiveScriptHandler(rs));
+		}
+	}
+}
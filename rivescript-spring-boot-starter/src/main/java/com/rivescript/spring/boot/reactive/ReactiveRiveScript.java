@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.spring.boot.reactive;
+
+import com.rivescript.ReplyDispatcher;
+import com.rivescript.ReplyRequest;
+import com.rivescript.RiveScript;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reactive facade for a {@link RiveScript} bot.
+ * <p>
+ * Replies are computed on a dedicated thread pool, so callers running on an event loop are never blocked. Messages of the same user are
+ * replied to in order (see {@link ReplyDispatcher}). The number of replies in flight is bounded: when the bound is reached, new replies
+ * fail with a {@link RejectedExecutionException} instead of queueing up without limit.
+ * <p>
+ * Usage:
+ * <p>
+ * <pre>
+ * <code>
+ * ReactiveRiveScript reactive = new ReactiveRiveScript(rs, 8, 256);
+ * Mono&lt;String&gt; reply = reactive.reply("user", "hello bot");
+ * </code>
+ * </pre>
+ *
+ * @author Marcel Overdijk
+ */
+public class ReactiveRiveScript implements Closeable {
+
+	/**
+	 * The default number of threads replying to messages.
+	 */
+	public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The default maximum number of replies in flight.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENCY = 256;
+
+	private final RiveScript rs;
+	private final ExecutorService executor;
+	private final ReplyDispatcher dispatcher;
+	private final Semaphore permits;
+	private final int maxConcurrency;
+
+	/**
+	 * Creates a new {@link ReactiveRiveScript} using the default number of threads and the default maximum concurrency.
+	 *
+	 * @param rs the RiveScript instance
+	 */
+	public ReactiveRiveScript(RiveScript rs) {
+		this(rs, DEFAULT_THREADS, DEFAULT_MAX_CONCURRENCY);
+	}
+
+	/**
+	 * Creates a new {@link ReactiveRiveScript}. The thread pool is shut down on {@link #close()}.
+	 *
+	 * @param rs             the RiveScript instance
+	 * @param threads        the number of threads replying to messages
+	 * @param maxConcurrency the maximum number of replies in flight
+	 */
+	public ReactiveRiveScript(RiveScript rs, int threads, int maxConcurrency) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("'threads' must be greater than 0");
+		}
+		if (maxConcurrency <= 0) {
+			throw new IllegalArgumentException("'maxConcurrency' must be greater than 0");
+		}
+		this.rs = rs;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "rivescript-reactive-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.dispatcher = new ReplyDispatcher(rs, executor);
+		this.permits = new Semaphore(maxConcurrency);
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * Returns the reply for the given user's message. The reply is computed when the returned {@link Mono} is subscribed to.
+	 * <p>
+	 * The {@link Mono} fails with a {@link RejectedExecutionException} when the maximum number of replies is already in flight.
+	 *
+	 * @param username the username
+	 * @param message  the user's message
+	 * @return the reply
+	 */
+	public Mono<String> reply(final String username, final String message) {
+		return Mono.create(new Consumer<MonoSink<String>>() {
+
+			@Override
+			public void accept(final MonoSink<String> sink) {
+				if (!permits.tryAcquire()) {
+					sink.error(new RejectedExecutionException("Too many replies in flight (" + maxConcurrency + ")"));
+					return;
+				}
+				final ReplyTask task = new ReplyTask(username, message, sink);
+				sink.onCancel(new Disposable() {
+
+					@Override
+					public void dispose() {
+						if (task.finish()) {
+							task.cancel(false);
+						}
+					}
+				});
+				try {
+					dispatcher.execute(username, task);
+				} catch (RejectedExecutionException e) {
+					if (task.finish()) {
+						sink.error(e);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns the replies for a stream of messages, in the order of the messages.
+	 * <p>
+	 * At most the maximum number of replies is requested from the stream at a time; more messages are only requested as replies complete.
+	 *
+	 * @param requests the messages to reply to
+	 * @return the replies
+	 */
+	public Flux<String> reply(Publisher<ReplyRequest> requests) {
+		return Flux.from(requests).flatMapSequential(new Function<ReplyRequest, Mono<String>>() {
+
+			@Override
+			public Mono<String> apply(ReplyRequest request) {
+				return reply(request.getUsername(), request.getMessage());
+			}
+		}, maxConcurrency);
+	}
+
+	/**
+	 * Returns the number of replies currently in flight.
+	 *
+	 * @return the number of replies in flight
+	 */
+	public int getInFlight() {
+		return maxConcurrency - permits.availablePermits();
+	}
+
+	/**
+	 * Returns the maximum number of replies in flight.
+	 *
+	 * @return the maximum number of replies in flight
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * A reply which releases its permit exactly once: when it completes, when its subscriber cancels it, or when the dispatcher cancels
+	 * it because the executor rejected it.
+	 */
+	private class ReplyTask extends FutureTask<String> {
+
+		private final MonoSink<String> sink;
+		private final AtomicBoolean finished = new AtomicBoolean();
+
+		ReplyTask(final String username, final String message, MonoSink<String> sink) {
+			super(new Callable<String>() {
+
+				@Override
+				public String call() {
+					return rs.reply(username, message);
+				}
+			});
+			this.sink = sink;
+		}
+
+		/**
+		 * Releases the permit, or returns {@code false} if it was already released.
+		 */
+		boolean finish() {
+			if (finished.compareAndSet(false, true)) {
+				permits.release();
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		protected void done() {
+			if (!finish()) {
+				return;
+			}
+			if (isCancelled()) {
+				sink.error(new RejectedExecutionException("Reply cancelled, the executor rejected it"));
+				return;
+			}
+			try {
+				sink.success(get());
+			} catch (ExecutionException e) {
+				sink.error(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				sink.error(e);
+			}
+		}
+	}
+
+	/**
+	 * Shuts down the thread pool.
+	 */
+	@Override
+	public void close() {
+		dispatcher.close();
+		executor.shutdown();
+	}
+}
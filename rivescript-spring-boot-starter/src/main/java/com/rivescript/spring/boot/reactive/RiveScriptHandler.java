@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.spring.boot.reactive;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.HandlerFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * WebFlux {@link HandlerFunction} replying to a message posted as JSON.
+ * <p>
+ * The request body is a JSON object with a {@code username} and a {@code message}, the response body a JSON object with the
+ * {@code reply}. When too many replies are in flight the handler responds with {@code 503 Service Unavailable}.
+ *
+ * @author Marcel Overdijk
+ */
+public class RiveScriptHandler implements HandlerFunction<ServerResponse> {
+
+	private final ReactiveRiveScript rs;
+
+	/**
+	 * Creates a new {@link RiveScriptHandler}.
+	 *
+	 * @param rs the reactive RiveScript facade
+	 */
+	public RiveScriptHandler(ReactiveRiveScript rs) {
+		this.rs = rs;
+	}
+
+	@Override
+	public Mono<ServerResponse> handle(ServerRequest request) {
+		return request.bodyToMono(Message.class)
+				.flatMap(new Function<Message, Mono<String>>() {
+
+					@Override
+					public Mono<String> apply(Message message) {
+						return rs.reply(message.getUsername(), message.getMessage());
+					}
+				})
+				.flatMap(new Function<String, Mono<ServerResponse>>() {
+
+					@Override
+					public Mono<ServerResponse> apply(String reply) {
+						return ServerResponse.ok()
+								.contentType(MediaType.APPLICATION_JSON)
+								.syncBody(Collections.singletonMap("reply", reply));
+					}
+				})
+				.switchIfEmpty(ServerResponse.badRequest().build())
+				.onErrorResume(RejectedExecutionException.class, new Function<RejectedExecutionException, Mono<ServerResponse>>() {
+
+					@Override
+					public Mono<ServerResponse> apply(RejectedExecutionException e) {
+						return ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+					}
+				});
+	}
+
+	/**
+	 * The request body.
+	 */
+	public static class Message {
+
+		private String username;
+		private String message;
+
+		public String getUsername() {
+			return username;
+		}
+
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public void setMessage(String message) {
+			this.message = message;
+		}
+	}
+}
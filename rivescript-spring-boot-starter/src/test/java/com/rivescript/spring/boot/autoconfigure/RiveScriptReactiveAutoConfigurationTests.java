@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.rivescript.spring.boot.autoconfigure;
+
+import com.rivescript.ReplyRequest;
+import com.rivescript.spring.boot.reactive.ReactiveRiveScript;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link RiveScriptReactiveAutoConfiguration}.
+ *
+ * @author Marcel Overdijk
+ */
+public class RiveScriptReactiveAutoConfigurationTests {
+
+	private AnnotationConfigApplicationContext context;
+
+	@Before
+	public void setUp() {
+		this.context = new AnnotationConfigApplicationContext();
+	}
+
+	@After
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Test
+	public void testDefaultAutoConfiguration() {
+		load();
+
+		ReactiveRiveScript rs = this.context.getBean(ReactiveRiveScript.class);
+
+		assertThat(rs.getMaxConcurrency(), is(equalTo(RiveScriptProperties.DEFAULT_REACTIVE_MAX_CONCURRENCY)));
+		assertThat(rs.reply("local-user", "hello").block(), is(equalTo("Hi there!")));
+		assertThat(rs.getInFlight(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testReplyStream() {
+		load("rivescript.reactive.threads: 2", "rivescript.reactive.max-concurrency: 2");
+
+		ReactiveRiveScript rs = this.context.getBean(ReactiveRiveScript.class);
+		List<String> replies = rs.reply(Flux.fromIterable(Arrays.asList(
+				new ReplyRequest("user1", "hello"),
+				new ReplyRequest("user2", "hello"),
+				new ReplyRequest("user3", "hello")))).collectList().block();
+
+		assertThat(rs.getMaxConcurrency(), is(equalTo(2)));
+		assertThat(replies, contains("Hi there!", "Hi there!", "Hi there!"));
+	}
+
+	@Test
+	public void testDisabled() {
+		load("rivescript.reactive.enabled: false");
+
+		assertThat(this.context.getBeansOfType(ReactiveRiveScript.class).size(), is(0));
+	}
+
+	@Test
+	public void testRiveScriptDisabled() {
+		load("rivescript.enabled: false");
+
+		assertThat(this.context.getBeansOfType(ReactiveRiveScript.class).size(), is(0));
+	}
+
+	private void load(String... environment) {
+		this.context.register(RiveScriptAutoConfiguration.class, RiveScriptReactiveAutoConfiguration.class);
+		TestPropertyValues.of(environment).applyTo(this.context);
+		this.context.refresh();
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 the original author or authors.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.rivescript.spring.boot.reactive;
+
+import com.rivescript.RiveScript;
+import com.rivescript.macro.Subroutine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.Disposable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ReactiveRiveScript}.
+ *
+ * @author Marcel Overdijk
+ */
+public class ReactiveRiveScriptTests {
+
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch unblock = new CountDownLatch(1);
+	private ReactiveRiveScript reactive;
+
+	@Before
+	public void setUp() {
+		RiveScript rs = new RiveScript();
+		rs.setSubroutine("block", new Subroutine() {
+
+			@Override
+			public String call(RiveScript rs, String[] args) {
+				started.countDown();
+				try {
+					unblock.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return "Done.";
+			}
+		});
+		rs.stream(new String[] {
+				"+ block",
+				"- <call>block</call>",
+				"",
+				"+ hello",
+				"- Hi there!"
+		});
+		rs.sortReplies();
+		reactive = new ReactiveRiveScript(rs, 1, 4);
+	}
+
+	@After
+	public void tearDown() {
+		unblock.countDown();
+		reactive.close();
+	}
+
+	@Test
+	public void testCancelQueuedReplies() throws InterruptedException {
+		// Keep the only thread busy, so the next replies are queued.
+		reactive.reply("user0", "block").subscribe();
+		assertThat(started.await(5, TimeUnit.SECONDS), is(equalTo(true)));
+		List<Disposable> queued = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			queued.add(reactive.reply("user" + i, "hello").subscribe());
+		}
+		assertThat(reactive.getInFlight(), is(equalTo(4)));
+
+		// Cancelled replies release their permits although they never run.
+		for (Disposable reply : queued) {
+			reply.dispose();
+		}
+		assertThat(reactive.getInFlight(), is(equalTo(1)));
+
+		unblock.countDown();
+		assertThat(reactive.reply("user0", "hello").block(Duration.ofSeconds(5)), is(equalTo("Hi there!")));
+		assertThat(reactive.getInFlight(), is(equalTo(0)));
+	}
+
+	@Test
+	public void testRejectedReply() {
+		reactive.close();
+		try {
+			reactive.reply("user0", "hello").block(Duration.ofSeconds(5));
+			fail("Expected RejectedExecutionException");
+		} catch (RejectedExecutionException e) {
+			assertThat(reactive.getInFlight(), is(equalTo(0)));
+		}
+	}
+}